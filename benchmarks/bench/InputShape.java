@@ -0,0 +1,101 @@
+package bench;
+
+import java.util.Random;
+
+/**
+ * InputShape.java
+ * Synthetic .lang programs with a dominant kind of token, for benchmarks
+ *
+ * Programs are built from whole statements until the requested size is
+ * reached, using a fixed seed so every run scans the same text.
+ */
+public enum InputShape {
+
+    /** Declarations and assignments over many distinct identifiers */
+    IDENTIFIERS {
+        @Override
+        void statement(StringBuilder sb, Random random) {
+            sb.append("declare ").append(identifier(random)).append(" = ")
+              .append(identifier(random)).append(" + ").append(identifier(random))
+              .append(" * ").append(identifier(random)).append(";\n");
+        }
+    },
+
+    /** Integer, float, string, char and boolean literals */
+    LITERALS {
+        @Override
+        void statement(StringBuilder sb, Random random) {
+            sb.append("output ").append(random.nextInt(100000)).append(", ")
+              .append(random.nextInt(1000)).append('.').append(random.nextInt(999999))
+              .append("e-").append(random.nextInt(20)).append(", \"value\\t")
+              .append(random.nextInt(1000)).append("\\n\", 'x', ")
+              .append(random.nextBoolean() ? "true" : "false").append(";\n");
+        }
+    },
+
+    /** Mostly single-line and multi-line comments */
+    COMMENTS {
+        @Override
+        void statement(StringBuilder sb, Random random) {
+            if (random.nextBoolean()) {
+                sb.append("## running total of ").append(identifier(random))
+                  .append(" for this block\n");
+            } else {
+                sb.append("#* Block comment ").append(random.nextInt(1000))
+                  .append("\n   spanning several lines ** with stars *\n   and more text *#\n");
+            }
+            if (random.nextInt(4) == 0) {
+                sb.append(identifier(random)).append(" += 1;\n");
+            }
+        }
+    },
+
+    /** Invalid characters, malformed numbers and unterminated literals */
+    ERRORS {
+        @Override
+        void statement(StringBuilder sb, Random random) {
+            switch (random.nextInt(6)) {
+                case 0: sb.append(identifier(random)).append(" @ $ 3;\n"); break;
+                case 1: sb.append("declare Value = 5.;\n"); break;
+                case 2: sb.append("output 1.12345678e;\n"); break;
+                case 3: sb.append("output \"never closed\n"); break;
+                case 4: sb.append("counter = 'ab';\n"); break;
+                default: sb.append("This_identifier_is_longer_than_thirty_one_chars = 1;\n");
+            }
+        }
+    };
+
+    abstract void statement(StringBuilder sb, Random random);
+
+    private static String identifier(Random random) {
+        return "Var_" + random.nextInt(5000);
+    }
+
+    /**
+     * Program of at least size chars (and at most one statement more)
+     */
+    public String generate(int size) {
+        Random random = new Random(4031L + ordinal());
+        StringBuilder sb = new StringBuilder(size + 128);
+        sb.append("start\n");
+        while (sb.length() < size) {
+            statement(sb, random);
+        }
+        sb.append("finish\n");
+        return sb.toString();
+    }
+
+    /**
+     * Parse a size such as 1KB, 64KB, 1MB or 100MB
+     */
+    public static int parseSize(String size) {
+        String upper = size.trim().toUpperCase();
+        if (upper.endsWith("KB")) {
+            return Integer.parseInt(upper.substring(0, upper.length() - 2)) << 10;
+        }
+        if (upper.endsWith("MB")) {
+            return Integer.parseInt(upper.substring(0, upper.length() - 2)) << 20;
+        }
+        return Integer.parseInt(upper);
+    }
+}
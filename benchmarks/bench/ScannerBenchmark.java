@@ -0,0 +1,152 @@
+package bench;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ScannerBenchmark.java
+ * JMH comparison of ManualScanner and the JFlex-generated Yylex
+ *
+ * Each benchmark scans one whole in-memory program per operation. The
+ * "tokens" and "bytes" counters are reported per second next to ops/s,
+ * and main() adds the GC profiler so gc.alloc.rate.norm gives the bytes
+ * allocated per operation.
+ *
+ * Both pull benchmarks drive their engine through the common Lexer
+ * interface, so they do the same work per token: a Token object, a symbol
+ * table entry for identifiers and an ErrorHandler entry per error.
+ *
+ * The scanners live in the default package, which a named package cannot
+ * import, so they are bound once through method handles.
+ *
+ * Run: java -jar target/benchmarks.jar [JMH options]
+ *      e.g. -p shape=IDENTIFIERS -p size=1MB
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+
+    private static final MethodHandle MANUAL_NEW;
+    private static final MethodHandle MANUAL_SCAN;
+    private static final MethodHandle YYLEX_NEW;
+    private static final MethodHandle TOKEN_COUNT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> manual = Class.forName("ManualScanner");
+            Class<?> yylex = Class.forName("Yylex");
+            Class<?> lexer = Class.forName("Lexer");
+
+            MANUAL_NEW = lookup.findConstructor(manual, MethodType.methodType(void.class, String.class))
+                               .asType(MethodType.methodType(Object.class, String.class));
+            MANUAL_SCAN = lookup.findVirtual(manual, "scan", MethodType.methodType(void.class))
+                                .asType(MethodType.methodType(void.class, Object.class));
+            YYLEX_NEW = lookup.findConstructor(yylex, MethodType.methodType(void.class, Reader.class))
+                              .asType(MethodType.methodType(Object.class, Reader.class));
+            TOKEN_COUNT = lookup.findVirtual(lexer, "getTokenCount", MethodType.methodType(int.class))
+                                .asType(MethodType.methodType(int.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Param({"IDENTIFIERS", "LITERALS", "COMMENTS", "ERRORS"})
+    public InputShape shape;
+
+    @Param({"1KB", "64KB", "1MB", "100MB"})
+    public String size;
+
+    private String source;
+    private long sourceBytes;
+
+    /**
+     * Per-thread counters, reported by JMH as rates next to ops/s
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long tokens;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = shape.generate(InputShape.parseSize(size));
+        sourceBytes = source.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * ManualScanner.scan(): token buffer, symbol table and statistics
+     */
+    @Benchmark
+    public Object manualScan(Counters counters) throws Throwable {
+        Object scanner = (Object) MANUAL_NEW.invokeExact(source);
+        MANUAL_SCAN.invokeExact(scanner);
+        counters.tokens += (int) TOKEN_COUNT.invokeExact(scanner);
+        counters.bytes += sourceBytes;
+        return scanner;
+    }
+
+    /**
+     * ManualScanner through the Lexer pull API, nothing retained
+     */
+    @Benchmark
+    public void manualPull(Counters counters, Blackhole blackhole) throws Throwable {
+        pull((Object) MANUAL_NEW.invokeExact(source), counters, blackhole);
+    }
+
+    /**
+     * JFlex-generated Yylex through the Lexer pull API
+     */
+    @Benchmark
+    public void jflexPull(Counters counters, Blackhole blackhole) throws Throwable {
+        pull((Object) YYLEX_NEW.invokeExact((Reader) new StringReader(source)), counters, blackhole);
+    }
+
+    /**
+     * Pull every token of a Lexer (an Iterable ending with EOF)
+     */
+    private void pull(Object lexer, Counters counters, Blackhole blackhole) throws Throwable {
+        for (Object token : (Iterable<?>) lexer) {
+            blackhole.consume(token);
+        }
+        counters.tokens += (int) TOKEN_COUNT.invokeExact(lexer);
+        counters.bytes += sourceBytes;
+    }
+
+    /**
+     * Run with the GC profiler enabled for allocation per operation
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .include(ScannerBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
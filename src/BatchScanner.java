@@ -0,0 +1,333 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+/**
+ * BatchScanner.java
+ * Scans many .lang files concurrently inside one JVM
+ *
+ * Every file is scanned on its own virtual thread; a semaphore bounds how
+ * many scans run at once (default: number of processors). Each file gets
+ * the same report ManualScanner.main prints, written to
+ * <output-dir>/<name>_output.txt like run_all_tests.sh does, and an
+ * aggregated summary of tokens, errors and throughput is printed at the
+ * end and saved as batch_summary.txt. Scan metrics of every file and
+ * their totals are saved as batch_metrics.json. Identifiers of all files are
+ * collected into one ConcurrentSymbolTable as the scans finish.
+ *
+ * Usage: java BatchScanner [-o output-dir] [-j max-parallel] [-e max-errors]
+ *                          [-c cache-dir] [-a] <file-or-dir>...
+ * Directories are searched recursively for .lang files. With -e each file
+ * keeps at most max-errors errors in its report; the rest are only counted.
+ * With -c the results of unchanged files are loaded from a TokenCache in
+ * cache-dir instead of being scanned again. Virtual threads have no
+ * allocation counter, so the bytes allocated by each scan are unknown;
+ * with -a the files are scanned on a pool of max-parallel platform
+ * threads instead, which measures them.
+ */
+public class BatchScanner {
+    
+    /**
+     * Outcome of scanning one file
+     */
+    static class FileResult {
+        Path file;
+        Path output;
+        long bytes;
+        int tokens;
+        int lines;
+        int errors;
+        long nanos;
+        String failure;     // null when the scan completed
+        boolean cached;     // results loaded from the token cache
+        ScanMetrics metrics; // null when not scanned
+    }
+    
+    private final Path outputDir;
+    private final int maxParallel;
+    private int errorLimit = Integer.MAX_VALUE;
+    private TokenCache cache;
+    private boolean platformThreads;
+    private final ConcurrentSymbolTable identifiers = new ConcurrentSymbolTable();
+    
+    public BatchScanner(Path outputDir, int maxParallel) {
+        this.outputDir = outputDir;
+        this.maxParallel = maxParallel;
+    }
+    
+    /**
+     * Collect at most errorLimit errors per file
+     */
+    public void setErrorLimit(int errorLimit) {
+        this.errorLimit = errorLimit;
+    }
+    
+    /**
+     * Load results of unchanged files from cache (null scans every file)
+     */
+    public void setCache(TokenCache cache) {
+        this.cache = cache;
+    }
+    
+    /**
+     * Scan on a pool of maxParallel platform threads instead of virtual
+     * threads, so the bytes allocated by each scan are measured
+     */
+    public void setPlatformThreads(boolean platformThreads) {
+        this.platformThreads = platformThreads;
+    }
+    
+    /**
+     * Scan all files, one virtual thread each (or on the platform thread
+     * pool), returning results in input order
+     */
+    List<FileResult> scanAll(List<Path> files) throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        List<Path> outputs = outputNames(files);
+        Semaphore permits = new Semaphore(maxParallel);
+        List<Future<FileResult>> futures = new ArrayList<>();
+        
+        try (ExecutorService executor = platformThreads
+                ? Executors.newFixedThreadPool(Math.max(1, Math.min(maxParallel, files.size())))
+                : Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                Path output = outputs.get(i);
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return scanOne(file, output);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+        
+        List<FileResult> results = new ArrayList<>();
+        for (Future<FileResult> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Batch task failed", e.getCause());
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Scan one file into its output file
+     * Read errors are written to the output, as "2>&1" does in the scripts.
+     */
+    private FileResult scanOne(Path file, Path output) throws IOException {
+        FileResult result = new FileResult();
+        result.file = file;
+        result.output = output;
+        long start = System.nanoTime();
+        
+        try (PrintStream out = new PrintStream(new BufferedOutputStream(
+                Files.newOutputStream(output), 64 * 1024), false, StandardCharsets.UTF_8)) {
+            try {
+                ManualScanner scanner = ManualScanner.scanFile(file.toString(), out, errorLimit, cache);
+                result.cached = scanner.isRestored();
+                result.metrics = scanner.getMetrics();
+                result.bytes = Files.size(file);
+                result.tokens = scanner.getTokenCount();
+                result.lines = scanner.getLineCount();
+                result.errors = scanner.getErrorHandler().getTotalCount();
+                identifiers.addAll(scanner.getSymbolTable());
+            } catch (IOException | UncheckedIOException e) {
+                out.println("Error reading file: " + e.getMessage());
+                result.failure = e.getMessage();
+            }
+        }
+        
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+    
+    /**
+     * Identifiers of every file scanned so far
+     */
+    public ConcurrentSymbolTable getIdentifiers() {
+        return identifiers;
+    }
+    
+    /**
+     * Output file per input: name_output.txt, numbered when names repeat
+     */
+    private List<Path> outputNames(List<Path> files) {
+        Set<String> used = new HashSet<>();
+        List<Path> outputs = new ArrayList<>();
+        for (Path file : files) {
+            String base = file.getFileName().toString();
+            if (base.endsWith(".lang")) {
+                base = base.substring(0, base.length() - ".lang".length());
+            }
+            String name = base + "_output.txt";
+            for (int n = 2; !used.add(name); n++) {
+                name = base + "_" + n + "_output.txt";
+            }
+            outputs.add(outputDir.resolve(name));
+        }
+        return outputs;
+    }
+    
+    /**
+     * Expand the command-line arguments into a sorted list of .lang files
+     */
+    private static List<Path> collectFiles(List<String> args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".lang"))
+                        .sorted()
+                        .forEach(files::add);
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+    
+    /**
+     * Per-file scan metrics and their totals as one JSON document
+     * Files loaded from the cache or not read have no metrics.
+     */
+    static String metricsJson(List<FileResult> results) {
+        ScanMetrics total = new ScanMetrics();
+        StringBuilder sb = new StringBuilder("{\"files\":[");
+        for (int i = 0; i < results.size(); i++) {
+            FileResult r = results.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("\n  ");
+            if (r.metrics != null) {
+                r.metrics.appendJson(sb);
+                total.add(r.metrics);
+            } else {
+                sb.append("{\"source\":");
+                ScanMetrics.appendJsonString(sb, r.file.toString());
+                sb.append(",\"cached\":").append(r.cached).append('}');
+            }
+        }
+        sb.append("\n],\n\"total\":");
+        return total.appendJson(sb).append("}\n").toString();
+    }
+    
+    /**
+     * Build the aggregated summary report
+     */
+    private static String summarize(List<FileResult> results, int distinctIdentifiers,
+                                    long elapsedNanos) {
+        long bytes = 0;
+        long tokens = 0;
+        long lines = 0;
+        long errors = 0;
+        int failed = 0;
+        for (FileResult r : results) {
+            bytes += r.bytes;
+            tokens += r.tokens;
+            lines += r.lines;
+            errors += r.errors;
+            if (r.failure != null) {
+                failed++;
+            }
+        }
+        double seconds = elapsedNanos / 1e9;
+        
+        StringBuilder sb = new StringBuilder();
+        sb.append("=".repeat(80)).append('\n');
+        sb.append("BATCH SCAN SUMMARY\n");
+        sb.append("=".repeat(80)).append('\n');
+        sb.append(String.format("%-40s | %8s | %7s | %6s | %s%n",
+                                "File", "Tokens", "Lines", "Errors", "Status"));
+        sb.append("-".repeat(80)).append('\n');
+        for (FileResult r : results) {
+            String status = r.failure != null ? "FAILED: " + r.failure : r.cached ? "OK (cached)" : "OK";
+            sb.append(String.format("%-40s | %8d | %7d | %6d | %s%n",
+                                    r.file, r.tokens, r.lines, r.errors, status));
+        }
+        sb.append("-".repeat(80)).append('\n');
+        sb.append(String.format("Files scanned: %d (%d passed, %d failed)%n",
+                                results.size(), results.size() - failed, failed));
+        sb.append("Total tokens: ").append(tokens).append('\n');
+        sb.append("Total lines: ").append(lines).append('\n');
+        sb.append("Total lexical errors: ").append(errors).append('\n');
+        sb.append("Distinct identifiers: ").append(distinctIdentifiers).append('\n');
+        sb.append(String.format("Elapsed: %.3f s%n", seconds));
+        if (seconds > 0) {
+            sb.append(String.format("Throughput: %.1f files/s, %.2f MB/s, %.0f tokens/s%n",
+                                    results.size() / seconds, bytes / seconds / (1024 * 1024),
+                                    tokens / seconds));
+        }
+        sb.append("=".repeat(80)).append('\n');
+        return sb.toString();
+    }
+    
+    public static void main(String[] args) {
+        Path outputDir = Paths.get("test_outputs");
+        int maxParallel = Runtime.getRuntime().availableProcessors();
+        int errorLimit = Integer.MAX_VALUE;
+        Path cacheDir = null;
+        boolean platformThreads = false;
+        List<String> inputs = new ArrayList<>();
+        
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                outputDir = Paths.get(args[++i]);
+            } else if (args[i].equals("-j") && i + 1 < args.length) {
+                maxParallel = Math.max(1, Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-e") && i + 1 < args.length) {
+                errorLimit = Math.max(0, Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-c") && i + 1 < args.length) {
+                cacheDir = Paths.get(args[++i]);
+            } else if (args[i].equals("-a")) {
+                platformThreads = true;
+            } else {
+                inputs.add(args[i]);
+            }
+        }
+        
+        if (inputs.isEmpty()) {
+            System.out.println("Usage: java BatchScanner [-o output-dir] [-j max-parallel] [-e max-errors] " +
+                               "[-c cache-dir] [-a] <file-or-dir>...");
+            System.out.println("  -a  scan on platform threads to measure the bytes allocated by each file");
+            System.out.println("Example: java BatchScanner -o ../test_outputs ../tests");
+            return;
+        }
+        
+        try {
+            List<Path> files = collectFiles(inputs);
+            long start = System.nanoTime();
+            BatchScanner batch = new BatchScanner(outputDir, maxParallel);
+            batch.setErrorLimit(errorLimit);
+            batch.setPlatformThreads(platformThreads);
+            if (cacheDir != null) {
+                batch.setCache(new TokenCache(cacheDir));
+            }
+            List<FileResult> results = batch.scanAll(files);
+            long elapsed = System.nanoTime() - start;
+            String summary = summarize(results, batch.getIdentifiers().getSize(), elapsed);
+            
+            System.out.print(summary);
+            Path summaryFile = outputDir.resolve("batch_summary.txt");
+            Files.writeString(summaryFile, summary, StandardCharsets.UTF_8);
+            Files.writeString(outputDir.resolve("batch_metrics.json"), metricsJson(results),
+                              StandardCharsets.UTF_8);
+            System.out.println("Outputs saved in: " + outputDir);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Batch scan interrupted");
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * CappedErrorSink.java
+ * Error sink that passes the first errors on to another sink and only
+ * counts the rest
+ */
+public class CappedErrorSink implements ErrorSink {
+
+    private final ErrorSink target;
+    private final long limit;
+    private long passed;
+    private long dropped;
+
+    public CappedErrorSink(ErrorSink target, long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Error limit must not be negative: " + limit);
+        }
+        this.target = target;
+        this.limit = limit;
+    }
+
+    @Override
+    public void report(ErrorCode code, int offset, int line, int column,
+                       CharSequence lexeme, int length) {
+        if (passed < limit) {
+            passed++;
+            target.report(code, offset, line, column, lexeme, length);
+        } else {
+            dropped++;
+        }
+    }
+
+    /**
+     * Number of errors passed on to the target
+     */
+    public long getPassedCount() {
+        return passed;
+    }
+
+    /**
+     * Number of errors over the limit
+     */
+    public long getDroppedCount() {
+        return dropped;
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConcurrentSymbolTable.java
+ * Identifier table that many scanner threads can feed at the same time
+ *
+ * Names are spread over lock stripes by hash. Each stripe is an
+ * open-addressing table that is read without locking; only adding a new
+ * name (or moving a first occurrence earlier) takes the stripe's lock.
+ * Slots are written with release and read with acquire semantics, so a
+ * reader that finds an entry also sees its first occurrence.
+ * Frequencies are LongAdder counters, so threads counting the same
+ * identifier do not contend on one field.
+ *
+ * A name seen by several threads keeps its earliest (line, column) first
+ * occurrence. toSymbolTable() gives a plain SymbolTable in order of first
+ * occurrence, the same for any interleaving of the threads.
+ */
+public class ConcurrentSymbolTable {
+
+    /**
+     * One identifier; name and hash never change once published
+     */
+    private static final class Entry {
+        final String name;
+        final int hash;
+        final LongAdder frequency = new LongAdder();
+        volatile long firstPosition;    // line << 32 | column
+
+        Entry(String name, int hash, long firstPosition) {
+            this.name = name;
+            this.hash = hash;
+            this.firstPosition = firstPosition;
+        }
+    }
+
+    /**
+     * Lock stripe with its own hash table
+     * The table array is replaced, never resized in place, so readers
+     * always probe a consistent array.
+     */
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<>(16);
+        int size;                       // guarded by the lock
+    }
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    public ConcurrentSymbolTable() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a table with about concurrency lock stripes (at most 256)
+     */
+    public ConcurrentSymbolTable(int concurrency) {
+        int count = Math.min(256, Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1);
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        stripeMask = count - 1;
+    }
+
+    /**
+     * Add one occurrence of chars[offset, offset + length)
+     */
+    public void addIdentifier(char[] chars, int offset, int length, int line, int column) {
+        add(chars, offset, length, line, column, 1);
+    }
+
+    public void addIdentifier(String name, int line, int column) {
+        add(name.toCharArray(), 0, name.length(), line, column, 1);
+    }
+
+    /**
+     * Add every identifier of a per-thread or per-chunk table
+     */
+    public void addAll(SymbolTable table) {
+        for (int id = 0; id < table.getSize(); id++) {
+            String name = table.getName(id);
+            add(name.toCharArray(), 0, name.length(), table.getFirstLine(id),
+                table.getFirstColumn(id), table.getFrequency(id));
+        }
+    }
+
+    private void add(char[] chars, int offset, int length, int line, int column, long count) {
+        int hash = SymbolTable.hash(chars, offset, length);
+        long position = ((long) line << 32) | (column & 0xFFFFFFFFL);
+        Stripe stripe = stripes[spread(hash) & stripeMask];
+
+        // Fast path: known name, no lock
+        Entry entry = find(stripe.table, chars, offset, length, hash);
+        if (entry == null) {
+            stripe.lock.lock();
+            try {
+                entry = find(stripe.table, chars, offset, length, hash);
+                if (entry == null) {
+                    entry = new Entry(new String(chars, offset, length), hash, position);
+                    insert(stripe, entry);
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        entry.frequency.add(count);
+
+        // Keep the earliest first occurrence
+        if (position < entry.firstPosition) {
+            stripe.lock.lock();
+            try {
+                if (position < entry.firstPosition) {
+                    entry.firstPosition = position;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    // Stripes use the high bits of the hash, tables the low bits
+    private static int spread(int hash) {
+        return (hash * 0x9E3779B9) >>> 24;
+    }
+
+    private static Entry find(AtomicReferenceArray<Entry> table, char[] chars, int offset,
+                              int length, int hash) {
+        int mask = table.length() - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            Entry entry = table.getAcquire(slot);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.hash == hash && matches(entry.name, chars, offset, length)) {
+                return entry;
+            }
+        }
+    }
+
+    private static boolean matches(String name, char[] chars, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Insert under the stripe lock, publishing a larger copy when half full
+     */
+    private static void insert(Stripe stripe, Entry entry) {
+        AtomicReferenceArray<Entry> table = stripe.table;
+        if ((stripe.size + 1) * 2 > table.length()) {
+            AtomicReferenceArray<Entry> grown = new AtomicReferenceArray<>(table.length() * 2);
+            for (int i = 0; i < table.length(); i++) {
+                Entry old = table.getPlain(i);
+                if (old != null) {
+                    place(grown, old);
+                }
+            }
+            place(grown, entry);
+            stripe.table = grown;
+        } else {
+            place(table, entry);
+        }
+        stripe.size++;
+    }
+
+    private static void place(AtomicReferenceArray<Entry> table, Entry entry) {
+        int mask = table.length() - 1;
+        int slot = entry.hash & mask;
+        while (table.getPlain(slot) != null) {
+            slot = (slot + 1) & mask;
+        }
+        table.setRelease(slot, entry);
+    }
+
+    private Entry find(String name) {
+        char[] chars = name.toCharArray();
+        int hash = SymbolTable.hash(chars, 0, chars.length);
+        return find(stripes[spread(hash) & stripeMask].table, chars, 0, chars.length, hash);
+    }
+
+    /**
+     * Check if an identifier exists in the table
+     */
+    public boolean contains(String name) {
+        return find(name) != null;
+    }
+
+    /**
+     * Get the frequency of an identifier
+     */
+    public long getFrequency(String name) {
+        Entry entry = find(name);
+        return entry != null ? entry.frequency.sum() : 0;
+    }
+
+    /**
+     * Get total number of unique identifiers
+     * Exact once all adding threads have finished.
+     */
+    public int getSize() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.size;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Snapshot as a SymbolTable ordered by first occurrence (name breaks ties)
+     * Call once all adding threads have finished.
+     */
+    public SymbolTable toSymbolTable() {
+        List<Entry> entries = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            AtomicReferenceArray<Entry> slots = stripe.table;
+            for (int i = 0; i < slots.length(); i++) {
+                Entry entry = slots.getAcquire(i);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        }
+        entries.sort(Comparator.comparingLong((Entry e) -> e.firstPosition)
+                               .thenComparing(e -> e.name));
+
+        SymbolTable table = new SymbolTable();
+        for (Entry entry : entries) {
+            long frequency = entry.frequency.sum();
+            table.addOccurrences(entry.name, (int) (entry.firstPosition >>> 32),
+                                 (int) entry.firstPosition, (int) Math.min(frequency, Integer.MAX_VALUE));
+        }
+        return table;
+    }
+
+    /**
+     * Print the table in the same format as SymbolTable
+     */
+    public void display(PrintStream out) {
+        toSymbolTable().display(out);
+    }
+}
@@ -0,0 +1,730 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * CorpusGenerator.java
+ * Generates synthetic SimpleLang programs of any size for scale testing
+ *
+ * Programs follow docs/LanguageGrammar.txt: function declarations first,
+ * then the main start ... finish block, with nested loop and condition
+ * blocks, every operator and literal kind, and both comment forms.
+ * Generated code is also semantically sound: variables are declared
+ * before use in the enclosing blocks, expressions are well typed, calls
+ * match the declared parameter count, and break/continue/return appear
+ * only where allowed.
+ *
+ * With an error rate above 0, that fraction of statements gets one
+ * deliberate lexical error (invalid characters, malformed numbers,
+ * unterminated or badly escaped literals, overlong or lowercase names).
+ *
+ * Output only depends on the seed and settings, so a corpus can be
+ * regenerated instead of stored. Text is written as it is produced, so
+ * gigabyte corpora stream straight to disk in constant memory.
+ *
+ * Usage: java CorpusGenerator [-s seed] [-e error-rate] [-o file] <size>
+ * size accepts KB, MB and GB suffixes; without -o the program goes to stdout.
+ */
+public class CorpusGenerator {
+    
+    // Value types of variables and expressions
+    private static final int INT = 0;
+    private static final int FLOAT = 1;
+    private static final int BOOL = 2;
+    private static final int STRING = 3;
+    private static final int CHAR = 4;
+    private static final int TYPE_COUNT = 5;
+    
+    private static final String[] WORDS = {
+        "count", "total", "index", "value", "result", "sum", "average", "limit",
+        "size", "offset", "width", "height", "area", "score", "level", "rate",
+        "name", "label", "message", "flag", "done", "found", "valid", "key",
+        "item", "node", "step", "delta", "min", "max", "temp", "buffer"
+    };
+    private static final String[] COMMENT_WORDS = {
+        "compute", "the", "next", "value", "check", "bounds", "before", "update",
+        "running", "total", "for", "this", "block", "loop", "until", "done"
+    };
+    private static final char[] INVALID_CHARS = {'@', '$', '`', '~', '?', '^', '.'};
+    private static final String[] ESCAPES = {"\\n", "\\t", "\\r", "\\\\"};
+    private static final int MAX_CALLABLE = 256;
+    
+    private final SplittableRandom random;
+    private double errorRate = 0.0;
+    private int maxDepth = 4;
+    
+    // Output and its size so far
+    private Writer out;
+    private long written;
+    private final StringBuilder line = new StringBuilder(256);
+    
+    // Variables visible at the current point, innermost block last
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> types = new ArrayList<>();
+    private final List<Boolean> arrays = new ArrayList<>();
+    private final Deque<Integer> blockStarts = new ArrayDeque<>();
+    
+    // Recently declared functions (all return INT, parameters are INT);
+    // only the last MAX_CALLABLE are called, to keep memory constant
+    private final List<String> functions = new ArrayList<>();
+    private final List<Integer> arities = new ArrayList<>();
+    
+    private boolean inFunction;
+    private int loopDepth;
+    private long nameCounter;
+    
+    public CorpusGenerator(long seed) {
+        this.random = new SplittableRandom(seed);
+    }
+    
+    /**
+     * Fraction of statements (0 to 1) that get a deliberate lexical error
+     */
+    public void setErrorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1: " + errorRate);
+        }
+        this.errorRate = errorRate;
+    }
+    
+    /**
+     * Deepest nesting of loop and condition blocks
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(0, maxDepth);
+    }
+    
+    /**
+     * Program of at least size chars, as a String
+     */
+    public String generate(int size) {
+        StringWriter writer = new StringWriter(size + 1024);
+        try {
+            generate(writer, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);    // StringWriter does not throw
+        }
+        return writer.toString();
+    }
+    
+    /**
+     * Write a program of at least size chars (and at most one function or
+     * statement more) to out; returns the number of chars written
+     */
+    public long generate(Writer out, long size) throws IOException {
+        this.out = out;
+        this.written = 0;
+        
+        line.append("## Generated SimpleLang program (").append(size).append(" chars requested)\n\n");
+        flushLine();
+        
+        // Functions fill most of the program, the main block the rest
+        long mainSize = Math.min(Math.max(size / 10, 256), 1L << 20);
+        while (written < size - mainSize) {
+            function();
+        }
+        
+        line.append("start\n");
+        flushLine();
+        pushBlock();
+        while (written < size) {
+            statement(1, 0);
+        }
+        popBlock();
+        line.append("finish\n");
+        flushLine();
+        out.flush();
+        return written;
+    }
+    
+    /**
+     * Write a program of size chars to a file
+     */
+    public long generate(Path file, long size) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            return generate(writer, size);
+        }
+    }
+    
+    // ==================== Program Structure ====================
+    
+    /**
+     * start function Name(Params) statements return finish
+     */
+    private void function() throws IOException {
+        String name = newName("Compute");
+        int arity = random.nextInt(4);
+        
+        comment(0);
+        line.append("start function ").append(name).append('(');
+        pushBlock();
+        for (int i = 0; i < arity; i++) {
+            String param = newName(null);
+            declare(param, INT, false);
+            if (i > 0) {
+                line.append(", ");
+            }
+            line.append(param);
+        }
+        line.append(")\n");
+        flushLine();
+        
+        inFunction = true;
+        int statements = 3 + random.nextInt(12);
+        for (int i = 0; i < statements; i++) {
+            statement(1, 0);
+        }
+        indent(1);
+        line.append("return ");
+        expression(INT, 0);
+        line.append('\n');
+        flushLine();
+        inFunction = false;
+        
+        popBlock();
+        line.append("finish\n\n");
+        flushLine();
+        
+        // Declared after its body, so it never calls itself
+        if (functions.size() == MAX_CALLABLE) {
+            functions.remove(0);
+            arities.remove(0);
+        }
+        functions.add(name);
+        arities.add(arity);
+    }
+    
+    private void statement(int indent, int depth) throws IOException {
+        if (random.nextInt(12) == 0) {
+            comment(indent);
+        }
+        indent(indent);
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            erroneousStatement();
+            line.append('\n');
+            flushLine();
+            return;
+        }
+        
+        int choice = random.nextInt(20);
+        if (choice < 5 || names.isEmpty()) {
+            declaration();
+        } else if (choice < 10) {
+            assignment();
+        } else if (choice < 12) {
+            output();
+        } else if (choice < 13) {
+            input();
+        } else if (choice < 14 && !functions.isEmpty()) {
+            call();
+        } else if (choice < 17 && depth < maxDepth) {
+            conditional(indent, depth);
+            return;
+        } else if (choice < 19 && depth < maxDepth) {
+            loop(indent, depth);
+            return;
+        } else if (loopDepth > 0 && choice == 19) {
+            line.append(random.nextBoolean() ? "break" : "continue");
+        } else if (inFunction && choice == 19) {
+            line.append("return ");
+            expression(INT, 0);
+        } else {
+            assignment();
+        }
+        if (random.nextInt(10) == 0) {
+            line.append("  ## ").append(commentText());
+        }
+        line.append('\n');
+        flushLine();
+    }
+    
+    /**
+     * declare Name = expression, or declare Name[size]
+     */
+    private void declaration() {
+        String name = newName(null);
+        line.append("declare ").append(name);
+        if (random.nextInt(8) == 0) {
+            line.append('[').append(1 + random.nextInt(100)).append(']');
+            declare(name, INT, true);
+            return;
+        }
+        int type = random.nextInt(TYPE_COUNT);
+        line.append(" = ");
+        expression(type, 0);
+        declare(name, type, false);
+    }
+    
+    /**
+     * Name = e, Name op= e, Name++, Name--, Name[i] = e
+     */
+    private void assignment() {
+        int var = random.nextInt(names.size());
+        int type = types.get(var);
+        line.append(names.get(var));
+        if (arrays.get(var)) {
+            line.append('[');
+            expression(INT, 1);
+            line.append(']');
+        }
+        if (type == INT || type == FLOAT) {
+            switch (random.nextInt(6)) {
+                case 0: line.append("++"); return;
+                case 1: line.append("--"); return;
+                case 2: line.append(" += "); break;
+                case 3: line.append(" -= "); break;
+                case 4: line.append(" *= "); break;
+                default: line.append(" = "); break;
+            }
+        } else {
+            line.append(" = ");
+        }
+        expression(type, 0);
+    }
+    
+    private void output() {
+        line.append("output ");
+        int count = 1 + random.nextInt(3);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                line.append(", ");
+            }
+            expression(random.nextInt(TYPE_COUNT), 1);
+        }
+    }
+    
+    private void call() {
+        int function = random.nextInt(functions.size());
+        callExpression(function, 1);
+    }
+    
+    private void conditional(int indent, int depth) throws IOException {
+        line.append("condition (");
+        expression(BOOL, 0);
+        line.append(")\n");
+        flushLine();
+        block(indent + 1, depth + 1);
+        if (random.nextInt(3) == 0) {
+            indent(indent);
+            line.append("else\n");
+            flushLine();
+            block(indent + 1, depth + 1);
+        }
+        indent(indent);
+        line.append("finish\n");
+        flushLine();
+    }
+    
+    private void loop(int indent, int depth) throws IOException {
+        line.append("loop (");
+        expression(BOOL, 0);
+        line.append(")\n");
+        flushLine();
+        loopDepth++;
+        block(indent + 1, depth + 1);
+        loopDepth--;
+        indent(indent);
+        line.append("finish\n");
+        flushLine();
+    }
+    
+    private void block(int indent, int depth) throws IOException {
+        pushBlock();
+        int statements = 1 + random.nextInt(5);
+        for (int i = 0; i < statements; i++) {
+            statement(indent, depth);
+        }
+        popBlock();
+    }
+    
+    // ==================== Expressions ====================
+    
+    /**
+     * Expression of the given type; binary operators are spaced so that a
+     * following sign is never read as part of a number
+     */
+    private void expression(int type, int depth) {
+        boolean leaf = depth >= 3 || random.nextInt(3) == 0;
+        switch (type) {
+            case INT:
+            case FLOAT:
+                if (leaf) {
+                    numericOperand(type, depth);
+                } else if (random.nextInt(6) == 0) {
+                    line.append('(');
+                    expression(type, depth + 1);
+                    line.append(')');
+                } else {
+                    expression(type, depth + 1);
+                    String[] ops = type == INT ? new String[] {"+", "-", "*", "/", "%", "**"}
+                                               : new String[] {"+", "-", "*", "/", "**"};
+                    line.append(' ').append(ops[random.nextInt(ops.length)]).append(' ');
+                    expression(type, depth + 1);
+                }
+                break;
+            case BOOL:
+                if (leaf) {
+                    int var = variableOfType(BOOL);
+                    if (var >= 0 && random.nextBoolean()) {
+                        line.append(names.get(var));
+                    } else {
+                        line.append(random.nextBoolean() ? "true" : "false");
+                    }
+                } else {
+                    switch (random.nextInt(5)) {
+                        case 0:
+                            line.append('!');
+                            boolOperand(depth);
+                            break;
+                        case 1:
+                        case 2: {
+                            int operandType = random.nextBoolean() ? INT : FLOAT;
+                            String[] ops = {"<", ">", "<=", ">=", "==", "!="};
+                            expression(operandType, depth + 1);
+                            line.append(' ').append(ops[random.nextInt(ops.length)]).append(' ');
+                            expression(operandType, depth + 1);
+                            break;
+                        }
+                        default:
+                            boolOperand(depth);
+                            line.append(random.nextBoolean() ? " && " : " || ");
+                            boolOperand(depth);
+                            break;
+                    }
+                }
+                break;
+            case STRING: {
+                int var = variableOfType(STRING);
+                if (var >= 0 && random.nextBoolean()) {
+                    line.append(names.get(var));
+                } else {
+                    stringLiteral();
+                }
+                break;
+            }
+            default: {
+                int var = variableOfType(CHAR);
+                if (var >= 0 && random.nextBoolean()) {
+                    line.append(names.get(var));
+                } else {
+                    charLiteral();
+                }
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Boolean operand of !, && or ||: a literal, variable or parentheses
+     */
+    private void boolOperand(int depth) {
+        if (depth >= 2 || random.nextBoolean()) {
+            expression(BOOL, 3);
+        } else {
+            line.append('(');
+            expression(BOOL, depth + 1);
+            line.append(')');
+        }
+    }
+    
+    private void numericOperand(int type, int depth) {
+        int choice = random.nextInt(10);
+        int var = type == FLOAT ? variableOfType(random.nextBoolean() ? FLOAT : INT)
+                                : variableOfType(INT);
+        if (choice < 4 && var >= 0) {
+            line.append(names.get(var));
+            if (arrays.get(var)) {
+                line.append('[');
+                expression(INT, 3);
+                line.append(']');
+            }
+        } else if (choice < 5 && !functions.isEmpty() && depth < 3) {
+            callExpression(random.nextInt(functions.size()), depth + 1);
+        } else if (choice < 6) {
+            line.append('-');
+            if (var >= 0 && !arrays.get(var)) {
+                line.append(names.get(var));
+            } else {
+                line.append('(');
+                numericLiteral(type);
+                line.append(')');
+            }
+        } else {
+            numericLiteral(type);
+        }
+    }
+    
+    /**
+     * input into a visible variable; an array cannot be read as a whole,
+     * so with only arrays in scope a declaration is generated instead
+     */
+    private void input() {
+        int start = random.nextInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            int var = (start + i) % names.size();
+            if (!arrays.get(var)) {
+                line.append("input ").append(names.get(var));
+                return;
+            }
+        }
+        declaration();
+    }
+    
+    private void callExpression(int function, int depth) {
+        line.append(functions.get(function)).append('(');
+        for (int i = 0; i < arities.get(function); i++) {
+            if (i > 0) {
+                line.append(", ");
+            }
+            expression(INT, Math.max(depth, 2));
+        }
+        line.append(')');
+    }
+    
+    // ==================== Literals ====================
+    
+    private void numericLiteral(int type) {
+        if (type == INT || random.nextInt(4) == 0) {
+            line.append(random.nextInt(random.nextBoolean() ? 10 : 100000));
+            return;
+        }
+        line.append(random.nextInt(1000)).append('.');
+        int digits = 1 + random.nextInt(6);
+        for (int i = 0; i < digits; i++) {
+            line.append((char) ('0' + random.nextInt(10)));
+        }
+        if (random.nextInt(5) == 0) {
+            line.append(random.nextBoolean() ? 'e' : 'E');
+            int sign = random.nextInt(3);
+            if (sign > 0) {
+                line.append(sign == 1 ? '+' : '-');
+            }
+            line.append(random.nextInt(40));
+        }
+    }
+    
+    private void stringLiteral() {
+        line.append('"');
+        int words = random.nextInt(6);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                line.append(' ');
+            }
+            line.append(WORDS[random.nextInt(WORDS.length)]);
+            if (random.nextInt(6) == 0) {
+                line.append(random.nextBoolean() ? ESCAPES[random.nextInt(ESCAPES.length)] : "\\\"");
+            }
+        }
+        line.append('"');
+    }
+    
+    private void charLiteral() {
+        line.append('\'');
+        switch (random.nextInt(6)) {
+            case 0: line.append(ESCAPES[random.nextInt(ESCAPES.length)]); break;
+            case 1: line.append("\\'"); break;
+            case 2: line.append((char) ('0' + random.nextInt(10))); break;
+            default: line.append((char) ('a' + random.nextInt(26))); break;
+        }
+        line.append('\'');
+    }
+    
+    // ==================== Deliberate Errors ====================
+    
+    /**
+     * A statement carrying one lexical error
+     */
+    private void erroneousStatement() {
+        String name = names.isEmpty() ? newName(null) : names.get(random.nextInt(names.size()));
+        switch (random.nextInt(8)) {
+            case 0:     // invalid characters
+                line.append(name).append(" = ").append(random.nextInt(100)).append(' ');
+                int run = 1 + random.nextInt(3);
+                for (int i = 0; i < run; i++) {
+                    line.append(INVALID_CHARS[random.nextInt(INVALID_CHARS.length)]);
+                }
+                line.append(' ').append(random.nextInt(100));
+                break;
+            case 1:     // missing fraction
+                line.append("output ").append(random.nextInt(100)).append('.');
+                break;
+            case 2:     // too many decimal digits
+                line.append("output ").append(random.nextInt(10)).append('.')
+                    .append(1234567 + random.nextInt(1000000));
+                break;
+            case 3:     // missing exponent digits
+                line.append("output ").append(random.nextInt(10)).append(".5e");
+                break;
+            case 4:     // unterminated string
+                line.append("output \"").append(WORDS[random.nextInt(WORDS.length)]).append(" never closed");
+                break;
+            case 5:     // unterminated or overlong char literal
+                line.append("output ").append(random.nextBoolean() ? "'ab'" : "'x");
+                break;
+            case 6:     // invalid escape
+                line.append("output \"bad \\q escape\"");
+                break;
+            default:    // overlong identifier, or one starting lowercase
+                if (random.nextBoolean()) {
+                    line.append("declare This_name_is_much_longer_than_allowed_").append(random.nextInt(100))
+                        .append(" = 1");
+                } else {
+                    line.append("declare ").append(WORDS[random.nextInt(WORDS.length)]).append("_var = 1");
+                }
+                break;
+        }
+    }
+    
+    // ==================== Helpers ====================
+    
+    private void comment(int indent) throws IOException {
+        indent(indent);
+        if (random.nextInt(4) == 0) {
+            line.append("#* ").append(commentText()).append('\n');
+            indent(indent);
+            line.append("   ").append(commentText()).append(" *#\n");
+        } else {
+            line.append("## ").append(commentText()).append('\n');
+        }
+        flushLine();
+    }
+    
+    private String commentText() {
+        StringBuilder sb = new StringBuilder();
+        int words = 2 + random.nextInt(6);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(COMMENT_WORDS[random.nextInt(COMMENT_WORDS.length)]);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Fresh identifier: an uppercase word, an optional second word and a
+     * serial number, so names never repeat; at most 31 characters
+     */
+    private String newName(String prefix) {
+        StringBuilder sb = new StringBuilder();
+        String first = prefix != null ? prefix : WORDS[random.nextInt(WORDS.length)];
+        sb.append(Character.toUpperCase(first.charAt(0))).append(first, 1, first.length());
+        if (prefix != null || random.nextBoolean()) {
+            sb.append('_').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        sb.append(nameCounter++);
+        return sb.toString();
+    }
+    
+    private void declare(String name, int type, boolean array) {
+        names.add(name);
+        types.add(type);
+        arrays.add(array);
+    }
+    
+    /**
+     * A random visible variable of the given type, or -1
+     */
+    private int variableOfType(int type) {
+        if (names.isEmpty()) {
+            return -1;
+        }
+        int start = random.nextInt(names.size());
+        for (int i = 0; i < 8; i++) {
+            int var = (start + i) % names.size();
+            if (types.get(var) == type) {
+                return var;
+            }
+        }
+        return -1;
+    }
+    
+    private void pushBlock() {
+        blockStarts.push(names.size());
+    }
+    
+    /**
+     * Forget the variables declared in the innermost block
+     */
+    private void popBlock() {
+        int start = blockStarts.pop();
+        while (names.size() > start) {
+            int last = names.size() - 1;
+            names.remove(last);
+            types.remove(last);
+            arrays.remove(last);
+        }
+    }
+    
+    private void indent(int level) {
+        for (int i = 0; i < level; i++) {
+            line.append("    ");
+        }
+    }
+    
+    private void flushLine() throws IOException {
+        out.append(line);
+        written += line.length();
+        line.setLength(0);
+    }
+    
+    /**
+     * Parse a size such as 4096, 64KB, 100MB or 2GB
+     */
+    public static long parseSize(String size) {
+        String upper = size.trim().toUpperCase();
+        long unit = 1;
+        if (upper.endsWith("KB")) {
+            unit = 1L << 10;
+        } else if (upper.endsWith("MB")) {
+            unit = 1L << 20;
+        } else if (upper.endsWith("GB")) {
+            unit = 1L << 30;
+        }
+        if (unit > 1) {
+            upper = upper.substring(0, upper.length() - 2);
+        }
+        return Long.parseLong(upper) * unit;
+    }
+    
+    public static void main(String[] args) {
+        long seed = 1;
+        double errorRate = 0.0;
+        String output = null;
+        String size = null;
+        
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-s") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-e") && i + 1 < args.length) {
+                errorRate = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-o") && i + 1 < args.length) {
+                output = args[++i];
+            } else {
+                size = args[i];
+            }
+        }
+        
+        if (size == null) {
+            System.out.println("Usage: java CorpusGenerator [-s seed] [-e error-rate] [-o file] <size>");
+            System.out.println("Example: java CorpusGenerator -s 42 -e 0.05 -o big.lang 500MB");
+            return;
+        }
+        
+        try {
+            CorpusGenerator generator = new CorpusGenerator(seed);
+            generator.setErrorRate(errorRate);
+            if (output != null) {
+                long chars = generator.generate(Paths.get(output), parseSize(size));
+                System.out.println("Wrote " + chars + " chars to " + output);
+            } else {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+                generator.generate(writer, parseSize(size));
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
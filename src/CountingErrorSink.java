@@ -0,0 +1,34 @@
+/**
+ * CountingErrorSink.java
+ * Error sink that only counts errors per code, keeping nothing else
+ */
+public class CountingErrorSink implements ErrorSink {
+
+    private static final ErrorCode[] CODES = ErrorCode.values();
+
+    private final long[] counts = new long[CODES.length];
+
+    @Override
+    public void report(ErrorCode code, int offset, int line, int column,
+                       CharSequence lexeme, int length) {
+        counts[code.ordinal()]++;
+    }
+
+    /**
+     * Number of errors with the given code
+     */
+    public long getCount(ErrorCode code) {
+        return counts[code.ordinal()];
+    }
+
+    /**
+     * Number of errors of all codes
+     */
+    public long getCount() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+}
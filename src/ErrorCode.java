@@ -0,0 +1,96 @@
+/**
+ * ErrorCode.java
+ * The kinds of errors the scanners, the parser and the semantic analyzer report
+ *
+ * An error is recorded as its code plus positions; the reason text comes
+ * from the code and is only built when the error is printed. Several codes
+ * share a report category (e.g. the MALFORMED_NUMBER codes), which is what
+ * the error report shows in brackets.
+ */
+public enum ErrorCode {
+    INVALID_CHARACTER("INVALID_CHARACTER", null),
+    IDENTIFIER_TOO_LONG("INVALID_IDENTIFIER", "Identifier exceeds maximum length of 31 characters"),
+    MISSING_FRACTION("MALFORMED_NUMBER", "Missing fractional part after decimal point"),
+    FRACTION_TOO_LONG("MALFORMED_NUMBER", "Too many decimal digits (maximum 6 allowed)"),
+    MISSING_EXPONENT("MALFORMED_NUMBER", "Missing exponent digits after 'e' or 'E'"),
+    UNTERMINATED_STRING("UNTERMINATED_STRING", "String literal not properly closed with \""),
+    UNTERMINATED_CHAR("UNTERMINATED_CHAR", "Character literal not properly closed with '"),
+    UNCLOSED_COMMENT("UNCLOSED_COMMENT", "Multi-line comment started but never closed with *#"),
+    INVALID_ESCAPE("INVALID_ESCAPE",
+                   "Invalid escape sequence. Valid escapes: \\n, \\t, \\r, \\\", \\', \\\\"),
+
+    // Syntax errors, reported by the Parser at the offending token
+    UNEXPECTED_TOKEN("SYNTAX_ERROR", "Unexpected token"),
+    EXPECTED_STATEMENT("SYNTAX_ERROR", "Expected a statement"),
+    EXPECTED_EXPRESSION("SYNTAX_ERROR", "Expected an expression"),
+    EXPECTED_IDENTIFIER("SYNTAX_ERROR", "Expected an identifier"),
+    EXPECTED_ARRAY_SIZE("SYNTAX_ERROR", "Expected an integer array size"),
+    EXPECTED_OPEN_PAREN("SYNTAX_ERROR", "Expected '('"),
+    EXPECTED_CLOSE_PAREN("SYNTAX_ERROR", "Expected ')'"),
+    EXPECTED_CLOSE_BRACKET("SYNTAX_ERROR", "Expected ']'"),
+    EXPECTED_ASSIGNMENT("SYNTAX_ERROR", "Expected an assignment operator, '++', '--' or '('"),
+    INVALID_ASSIGNMENT_TARGET("SYNTAX_ERROR", "Only a variable or an array element can be assigned"),
+    MISSING_FINISH("SYNTAX_ERROR", "Block not closed with 'finish'"),
+    MISSING_MAIN("SYNTAX_ERROR", "Program has no main block (start ... finish)"),
+    NESTING_TOO_DEEP("SYNTAX_ERROR", "Nesting exceeds the maximum depth"),
+
+    // Semantic errors, reported by the SemanticAnalyzer at the offending name or operator
+    UNDECLARED_VARIABLE("SEMANTIC_ERROR", "Variable used before it is declared"),
+    UNDECLARED_FUNCTION("SEMANTIC_ERROR", "Call to an undeclared function"),
+    REDECLARED("SEMANTIC_ERROR", "Name already declared in this scope"),
+    NOT_A_FUNCTION("SEMANTIC_ERROR", "Only functions can be called"),
+    NOT_A_VARIABLE("SEMANTIC_ERROR", "A function name cannot be used as a value"),
+    NOT_AN_ARRAY("SEMANTIC_ERROR", "Only arrays can be indexed"),
+    ARRAY_WITHOUT_INDEX("SEMANTIC_ERROR", "An array can only be used through an index"),
+    ARGUMENT_COUNT("SEMANTIC_ERROR", "Number of arguments does not match the function's parameters"),
+    BREAK_OUTSIDE_LOOP("SEMANTIC_ERROR", "'break' can only appear inside loops"),
+    CONTINUE_OUTSIDE_LOOP("SEMANTIC_ERROR", "'continue' can only appear inside loops"),
+    RETURN_OUTSIDE_FUNCTION("SEMANTIC_ERROR", "'return' can only appear inside functions"),
+    MISSING_RETURN_VALUE("SEMANTIC_ERROR", "Return without a value in a function that returns one"),
+    OPERAND_NOT_NUMERIC("TYPE_ERROR", "Arithmetic operations require numeric operands"),
+    OPERAND_NOT_BOOLEAN("TYPE_ERROR", "Logical operations require boolean operands"),
+    OPERANDS_NOT_COMPARABLE("TYPE_ERROR", "Only two numeric or two boolean values can be compared"),
+    INDEX_NOT_INTEGER("TYPE_ERROR", "Array indices must be integers"),
+    CONDITION_NOT_BOOLEAN("TYPE_ERROR", "Condition must be a boolean value"),
+    TYPE_MISMATCH("TYPE_ERROR", "Value does not match the type of the variable"),
+    RETURN_TYPE_MISMATCH("TYPE_ERROR", "Returned value does not match the function's other return values");
+
+    private final String category;
+    private final String reason;
+
+    ErrorCode(String category, String reason) {
+        this.category = category;
+        this.reason = reason;
+    }
+
+    /**
+     * Report category shown in brackets, e.g. MALFORMED_NUMBER
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Reason text for an error covering length source characters
+     * whose (possibly shortened) text is lexeme
+     */
+    public String reason(CharSequence lexeme, int length) {
+        if (this != INVALID_CHARACTER) {
+            return reason;
+        }
+        if (length == 1) {
+            return "Character '" + lexeme + "' is not recognized in the language";
+        }
+        return length + " consecutive characters are not recognized in the language";
+    }
+
+    /**
+     * One line of the error report
+     */
+    public String format(int line, int column, CharSequence lexeme, int length) {
+        String shown = length > lexeme.length() && this == INVALID_CHARACTER
+                       ? lexeme + "..." : lexeme.toString();
+        return String.format("ERROR [%s] at Line: %d, Col: %d - Lexeme: '%s' - %s",
+                             category, line, column, shown, reason(lexeme, length));
+    }
+}
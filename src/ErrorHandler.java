@@ -1,106 +1,197 @@
+import java.io.PrintStream;
+import java.nio.CharBuffer;
 import java.util.*;
 
 /**
  * ErrorHandler.java
  * Handles detection, reporting, and recovery from lexical errors
  * Supports continuing scanning after errors to find all issues
+ *
+ * Errors are stored compactly: one slot per error in parallel arrays
+ * (code, offset, line, column, length) with the lexeme characters copied
+ * back to back into one text pool. Reason strings are only built when an
+ * error is printed.
+ *
+ * An optional error budget stops collecting after a number of errors;
+ * later errors are only counted, so junk input cannot exhaust memory.
+ * With a sink attached, errors are passed on as they are found instead of
+ * being stored.
  */
-public class ErrorHandler {
+public class ErrorHandler implements ErrorSink {
     
-    /**
-     * Inner class to represent a lexical error
-     */
-    private class LexicalError {
-        String errorType;
-        int lineNumber;
-        int columnNumber;
-        String lexeme;
-        String reason;
-        
-        LexicalError(String errorType, int line, int col, String lexeme, String reason) {
-            this.errorType = errorType;
-            this.lineNumber = line;
-            this.columnNumber = col;
-            this.lexeme = lexeme;
-            this.reason = reason;
-        }
-        
-        @Override
-        public String toString() {
-            return String.format("ERROR [%s] at Line: %d, Col: %d - Lexeme: '%s' - %s",
-                               errorType, lineNumber, columnNumber, lexeme, reason);
-        }
-    }
+    private static final ErrorCode[] CODES = ErrorCode.values();
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    // Longest part of an invalid run kept as the error lexeme
+    public static final int MAX_RUN_LEXEME = 40;
+    
+    // One slot per stored error
+    private byte[] codes;
+    private int[] offsets;          // source offset of the error
+    private int[] lengths;          // source characters covered
+    private int[] lines;
+    private int[] columns;
+    private int[] textStarts;       // lexeme i is text[textStarts[i], textStarts[i + 1])
+    private char[] text;
+    private int size;
     
-    private List<LexicalError> errors;
     private boolean hasErrors;
+    private int errorLimit;         // errors passed on at most
+    private int suppressedCount;    // errors over the limit
+    private int forwardedCount;     // errors passed to the sink
+    private ErrorSink sink;         // null: store errors here
+    private String phase = "lexical"; // named in the report
     
     public ErrorHandler() {
-        errors = new ArrayList<>();
+        this(Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Create a handler that collects at most errorLimit errors
+     */
+    public ErrorHandler(int errorLimit) {
+        if (errorLimit < 0) {
+            throw new IllegalArgumentException("Error limit must not be negative: " + errorLimit);
+        }
+        this.errorLimit = errorLimit;
+        codes = new byte[DEFAULT_CAPACITY];
+        offsets = new int[DEFAULT_CAPACITY];
+        lengths = new int[DEFAULT_CAPACITY];
+        lines = new int[DEFAULT_CAPACITY];
+        columns = new int[DEFAULT_CAPACITY];
+        textStarts = new int[DEFAULT_CAPACITY + 1];
+        text = new char[DEFAULT_CAPACITY * 8];
         hasErrors = false;
     }
     
     /**
-     * Report an invalid character error
+     * Set the error budget; errors past it are counted but not kept
+     */
+    public void setErrorLimit(int errorLimit) {
+        if (errorLimit < 0) {
+            throw new IllegalArgumentException("Error limit must not be negative: " + errorLimit);
+        }
+        this.errorLimit = errorLimit;
+    }
+    
+    /**
+     * Pass errors to sink as they are reported instead of storing them;
+     * null goes back to storing
      */
-    public void reportInvalidCharacter(char ch, int line, int col) {
-        String lexeme = String.valueOf(ch);
-        addError("INVALID_CHARACTER", line, col, lexeme, 
-                "Character '" + ch + "' is not recognized in the language");
+    public void setSink(ErrorSink sink) {
+        this.sink = sink;
     }
     
     /**
-     * Report a malformed number literal error
+     * Name of the phase whose errors this handler collects, for the
+     * report heading, e.g. "syntax"
      */
-    public void reportMalformedNumber(String lexeme, int line, int col, String issue) {
-        addError("MALFORMED_NUMBER", line, col, lexeme, issue);
+    public void setPhase(String phase) {
+        this.phase = phase;
     }
     
     /**
-     * Report an invalid identifier error
+     * True once the error budget is used up
      */
-    public void reportInvalidIdentifier(String lexeme, int line, int col, String issue) {
-        addError("INVALID_IDENTIFIER", line, col, lexeme, issue);
+    public boolean isFull() {
+        return size + forwardedCount >= errorLimit;
     }
     
     /**
-     * Report an unterminated string literal error
+     * Record an error, or pass it to the sink
      */
-    public void reportUnterminatedString(String lexeme, int line, int col) {
-        addError("UNTERMINATED_STRING", line, col, lexeme, 
-                "String literal not properly closed with \"");
+    @Override
+    public void report(ErrorCode code, int offset, int line, int column,
+                       CharSequence lexeme, int length) {
+        hasErrors = true;
+        if (isFull()) {
+            suppressedCount++;
+            return;
+        }
+        if (sink != null) {
+            forwardedCount++;
+            sink.report(code, offset, line, column, lexeme, length);
+            return;
+        }
+        int index = append(code, offset, line, column, length, lexeme.length());
+        int start = textStarts[index];
+        for (int i = 0; i < lexeme.length(); i++) {
+            text[start + i] = lexeme.charAt(i);
+        }
     }
     
     /**
-     * Report an unterminated character literal error
+     * Record an error covering exactly its lexeme
      */
-    public void reportUnterminatedChar(String lexeme, int line, int col) {
-        addError("UNTERMINATED_CHAR", line, col, lexeme, 
-                "Character literal not properly closed with '");
+    public void report(ErrorCode code, int offset, int line, int column, CharSequence lexeme) {
+        report(code, offset, line, column, lexeme, lexeme.length());
+    }
+    
+    private int append(ErrorCode code, int offset, int line, int column, int length,
+                       int lexemeLength) {
+        if (size == codes.length) {
+            grow();
+        }
+        int start = textStarts[size];
+        if (start + lexemeLength > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, start + lexemeLength));
+        }
+        codes[size] = (byte) code.ordinal();
+        offsets[size] = offset;
+        lengths[size] = length;
+        lines[size] = line;
+        columns[size] = column;
+        textStarts[size + 1] = start + lexemeLength;
+        return size++;
+    }
+    
+    private void grow() {
+        int capacity = codes.length * 2;
+        codes = Arrays.copyOf(codes, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        columns = Arrays.copyOf(columns, capacity);
+        textStarts = Arrays.copyOf(textStarts, capacity + 1);
     }
     
     /**
-     * Report an unclosed multi-line comment error
+     * Append all errors recorded by another handler, in order
      */
-    public void reportUnclosedComment(int startLine, int startCol) {
-        addError("UNCLOSED_COMMENT", startLine, startCol, "#*", 
-                "Multi-line comment started but never closed with *#");
+    public void addAll(ErrorHandler other) {
+        for (int i = 0; i < other.size; i++) {
+            int from = other.textStarts[i];
+            int lexemeLength = other.textStarts[i + 1] - from;
+            if (sink != null || isFull()) {
+                report(other.getCode(i), other.offsets[i], other.lines[i], other.columns[i],
+                       CharBuffer.wrap(other.text, from, lexemeLength), other.lengths[i]);
+            } else {
+                int index = append(other.getCode(i), other.offsets[i], other.lines[i],
+                                   other.columns[i], other.lengths[i], lexemeLength);
+                System.arraycopy(other.text, from, text, textStarts[index], lexemeLength);
+            }
+        }
+        suppressedCount += other.suppressedCount;
+        forwardedCount += other.forwardedCount;
+        hasErrors |= other.hasErrors;
     }
     
     /**
-     * Report an invalid escape sequence in string/char
+     * Pass every stored error to sink, in order
      */
-    public void reportInvalidEscape(String sequence, int line, int col) {
-        addError("INVALID_ESCAPE", line, col, sequence, 
-                "Invalid escape sequence. Valid escapes: \\n, \\t, \\r, \\\", \\', \\\\");
+    public void replayTo(ErrorSink target) {
+        for (int i = 0; i < size; i++) {
+            target.report(getCode(i), offsets[i], lines[i], columns[i], getText(i), lengths[i]);
+        }
     }
     
     /**
-     * Add a custom error message
+     * Count errors that were over the budget when the results were
+     * first produced, for results restored from a cache
      */
-    public void addError(String type, int line, int col, String lexeme, String reason) {
-        errors.add(new LexicalError(type, line, col, lexeme, reason));
-        hasErrors = true;
+    void addSuppressed(int count) {
+        suppressedCount += count;
+        hasErrors |= count > 0;
     }
     
     /**
@@ -111,40 +202,125 @@ public class ErrorHandler {
     }
     
     /**
-     * Get the total number of errors
+     * Get the number of errors collected
      */
     public int getErrorCount() {
-        return errors.size();
+        return size;
+    }
+    
+    /**
+     * Get the number of errors dropped because the budget was used up
+     */
+    public int getSuppressedCount() {
+        return suppressedCount;
+    }
+    
+    /**
+     * Get the number of errors reported, whether stored, passed to the
+     * sink or over the budget
+     */
+    public int getTotalCount() {
+        return size + forwardedCount + suppressedCount;
+    }
+    
+    // Accessors by error index
+    public ErrorCode getCode(int index) {
+        return CODES[codes[checkIndex(index)]];
+    }
+    
+    public int getOffset(int index) {
+        return offsets[checkIndex(index)];
+    }
+    
+    public int getLength(int index) {
+        return lengths[checkIndex(index)];
+    }
+    
+    public int getLineNumber(int index) {
+        return lines[checkIndex(index)];
+    }
+    
+    public int getColumnNumber(int index) {
+        return columns[checkIndex(index)];
+    }
+    
+    /**
+     * Lexeme of the error as a view of the text pool, without copying
+     */
+    public CharSequence getText(int index) {
+        checkIndex(index);
+        return CharBuffer.wrap(text, textStarts[index], textStarts[index + 1] - textStarts[index]);
+    }
+    
+    public String getLexeme(int index) {
+        return getText(index).toString();
+    }
+    
+    /**
+     * Reason text of the error, built on demand
+     */
+    public String getReason(int index) {
+        return getCode(index).reason(getText(index), lengths[index]);
+    }
+    
+    /**
+     * The error formatted as one line of the report
+     */
+    public String format(int index) {
+        return getCode(index).format(lines[index], columns[index], getText(index), lengths[index]);
+    }
+    
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Error index " + index + ", size " + size);
+        }
+        return index;
     }
     
     /**
      * Display all errors in a formatted report
      */
     public void displayErrors() {
+        displayErrors(System.out);
+    }
+    
+    /**
+     * Display all errors to the given stream
+     */
+    public void displayErrors(PrintStream out) {
         if (!hasErrors) {
-            System.out.println("\n✓ No lexical errors found!");
+            out.println("\n✓ No " + phase + " errors found!");
             return;
         }
         
-        System.out.println("\n" + "=".repeat(80));
-        System.out.println("LEXICAL ERROR REPORT");
-        System.out.println("=".repeat(80));
-        System.out.println("Total errors found: " + errors.size());
-        System.out.println("-".repeat(80));
+        out.println("\n" + "=".repeat(80));
+        out.println(phase.toUpperCase() + " ERROR REPORT");
+        out.println("=".repeat(80));
+        out.println("Total errors found: " + size);
+        out.println("-".repeat(80));
         
-        for (int i = 0; i < errors.size(); i++) {
-            System.out.println((i + 1) + ". " + errors.get(i));
+        for (int i = 0; i < size; i++) {
+            out.println((i + 1) + ". " + format(i));
+        }
+        if (forwardedCount > 0) {
+            out.println("... " + forwardedCount + " errors reported as they were found");
+        }
+        if (suppressedCount > 0) {
+            out.println("... " + suppressedCount + " more errors not collected (error limit " +
+                       errorLimit + ")");
         }
         
-        System.out.println("=".repeat(80) + "\n");
+        out.println("=".repeat(80) + "\n");
     }
     
     /**
      * Clear all recorded errors (useful for rescanning)
      */
     public void clearErrors() {
-        errors.clear();
+        size = 0;
         hasErrors = false;
+        suppressedCount = 0;
+        forwardedCount = 0;
     }
     
     /**
@@ -152,8 +328,8 @@ public class ErrorHandler {
      */
     public List<String> getErrorMessages() {
         List<String> messages = new ArrayList<>();
-        for (LexicalError error : errors) {
-            messages.add(error.toString());
+        for (int i = 0; i < size; i++) {
+            messages.add(format(i));
         }
         return messages;
     }
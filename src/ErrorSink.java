@@ -0,0 +1,17 @@
+/**
+ * ErrorSink.java
+ * Receives lexical errors one at a time, as the scanner finds them
+ *
+ * ErrorHandler collects errors for the end-of-scan report; other sinks
+ * stream them out immediately (StreamingErrorSink), only count them
+ * (CountingErrorSink) or pass on the first few (CappedErrorSink).
+ */
+public interface ErrorSink {
+
+    /**
+     * Report one error at source offset, line and column
+     * length is the number of source characters the error covers; lexeme
+     * is its text, possibly shortened, and is only valid during the call.
+     */
+    void report(ErrorCode code, int offset, int line, int column, CharSequence lexeme, int length);
+}
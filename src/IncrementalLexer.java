@@ -0,0 +1,205 @@
+/**
+ * IncrementalLexer.java
+ * Keeps the token stream of an edited text up to date without rescanning
+ * the whole text on every edit
+ *
+ * An edit (offset, removed length, inserted text) is re-lexed starting at
+ * the last token that is far enough before the damage that no earlier
+ * scanning step could have looked into it. Re-lexing stops as soon as a
+ * new token starts where an old token (after the damage) started, moved
+ * by the size change: from there on the text is the same, so the old
+ * tokens are reused and only their offsets, lines and (on that line)
+ * columns are moved. A comment opened or closed by the edit simply keeps
+ * the re-lexing going until the streams agree again, or to the end.
+ *
+ * The tokens always equal those of new ManualScanner(getText()).scan().
+ * Identifier tokens carry IDs of getSymbolTable(), which is shared by all
+ * re-lexing passes so IDs stay stable; its frequencies and first
+ * occurrences are not kept exact across edits, and neither are errors or
+ * statistics. Run a full scan when those are needed.
+ */
+public class IncrementalLexer {
+
+    /**
+     * Token index range changed by one edit
+     */
+    public static class TokenChange {
+        private final int start;
+        private final int removedCount;
+        private final int insertedCount;
+
+        TokenChange(int start, int removedCount, int insertedCount) {
+            this.start = start;
+            this.removedCount = removedCount;
+            this.insertedCount = insertedCount;
+        }
+
+        // Index of the first replaced token
+        public int getStart() {
+            return start;
+        }
+
+        // Number of old tokens replaced
+        public int getRemovedCount() {
+            return removedCount;
+        }
+
+        // Number of new tokens in their place
+        public int getInsertedCount() {
+            return insertedCount;
+        }
+
+        @Override
+        public String toString() {
+            return "TokenChange[start=" + start + ", removed=" + removedCount +
+                   ", inserted=" + insertedCount + "]";
+        }
+    }
+
+    // Furthest a scanning step looks past its start: a keyword candidate
+    // of MAX_LENGTH chars plus the char that must not continue the word
+    private static final int LOOKAHEAD = Keywords.MAX_LENGTH + 1;
+
+    private char[] text;            // text[0, length), with room to grow
+    private int length;
+    private final TokenBuffer tokens;
+    private final SymbolTable symbolTable;
+
+    public IncrementalLexer(String initialText) {
+        this.text = initialText.toCharArray();
+        this.length = text.length;
+
+        this.symbolTable = new SymbolTable();
+        ManualScanner scanner = ManualScanner.resumeAt(text, length, 0, 1, 1, symbolTable);
+        scanner.scan();
+        this.tokens = scanner.getTokenBuffer();
+    }
+
+    /**
+     * Apply an edit and update the tokens
+     * Replaces text[offset, offset + removedLength) with inserted.
+     */
+    public TokenChange edit(int offset, int removedLength, CharSequence inserted) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > length) {
+            throw new IndexOutOfBoundsException("Edit " + offset + "+" + removedLength +
+                                                " outside text of length " + length);
+        }
+        int insertedLength = inserted.length();
+        int delta = insertedLength - removedLength;
+        int oldDamageEnd = offset + removedLength;
+        int newDamageEnd = offset + insertedLength;
+
+        // Where to restart, found before the text changes
+        int first = restartIndex(offset);
+        int start = 0;
+        int line = 1;
+        int column = 1;
+        if (first >= 0) {
+            start = tokens.getOffset(first);
+            line = tokens.getLineNumber(first);
+            column = tokens.getColumnNumber(first);
+        } else {
+            first = 0;
+        }
+
+        replaceText(offset, removedLength, inserted);
+
+        // Re-lex until a token starts where a shifted old token started
+        ManualScanner scanner = ManualScanner.resumeAt(text, length, start, line, column,
+                                                       symbolTable);
+        TokenBuffer relexed = new TokenBuffer(text);
+        int oldSize = tokens.size();
+        int old = first;
+        while (true) {
+            Token token = scanner.nextToken();
+            int tokenStart = token.getOffset();
+
+            if (token.getType() != TokenType.EOF && tokenStart >= newDamageEnd) {
+                while (old < oldSize && (tokens.getOffset(old) < oldDamageEnd ||
+                                         tokens.getOffset(old) + delta < tokenStart)) {
+                    old++;
+                }
+                if (old < oldSize && tokens.getOffset(old) + delta == tokenStart) {
+                    tokens.shift(old, delta,
+                                 token.getLineNumber() - tokens.getLineNumber(old),
+                                 token.getColumnNumber() - tokens.getColumnNumber(old));
+                    tokens.replace(first, old, relexed);
+                    return new TokenChange(first, old - first, relexed.size());
+                }
+            }
+
+            relexed.add(token);
+            if (token.getType() == TokenType.EOF) {
+                break;
+            }
+        }
+
+        // No resynchronization: everything up to EOF was re-lexed
+        tokens.replace(first, oldSize, relexed);
+        return new TokenChange(first, oldSize - first, relexed.size());
+    }
+
+    /**
+     * Index of the last token that starts at least LOOKAHEAD chars before
+     * offset, or -1 if there is none
+     */
+    private int restartIndex(int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (tokens.getOffset(mid) + LOOKAHEAD <= offset) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Splice the text in place, growing the array when needed
+     */
+    private void replaceText(int offset, int removedLength, CharSequence inserted) {
+        int newLength = length - removedLength + inserted.length();
+        if (newLength > text.length) {
+            char[] grown = new char[Math.max(newLength, text.length + (text.length >> 1) + 16)];
+            System.arraycopy(text, 0, grown, 0, length);
+            text = grown;
+            tokens.setSource(text);
+        }
+        int tailStart = offset + removedLength;
+        System.arraycopy(text, tailStart, text, offset + inserted.length(), length - tailStart);
+        for (int i = 0; i < inserted.length(); i++) {
+            text[offset + i] = inserted.charAt(i);
+        }
+        length = newLength;
+    }
+
+    /**
+     * Current tokens, including the final EOF token
+     */
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Symbol table the identifier tokens' symbol IDs refer to
+     */
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * Current text
+     */
+    public String getText() {
+        return new String(text, 0, length);
+    }
+
+    public int getLength() {
+        return length;
+    }
+}
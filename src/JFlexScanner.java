@@ -1,26 +1,74 @@
-import java.io.FileReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 
 public class JFlexScanner {
 
+    /**
+     * Read every token from scanner up to EOF (not included)
+     * With metrics, every ScanMetrics.SAMPLE_INTERVAL-th token is timed,
+     * as ManualScanner.scan() does, so both engines can be compared.
+     */
+    static List<Token> scan(Yylex scanner, ScanMetrics metrics) {
+        List<Token> tokens = new ArrayList<>();
+        int[] counts = new int[TokenType.values().length];
+        if (metrics != null) {
+            metrics.begin(true);
+        }
+        int untilSample = ScanMetrics.SAMPLE_INTERVAL;
+        long start = 0;
+        Token token;
+        while (true) {
+            boolean sampled = metrics != null && --untilSample == 0;
+            if (sampled) {
+                start = System.nanoTime();
+            }
+            token = scanner.nextToken();
+            if (sampled) {
+                metrics.sample(token.getType(), System.nanoTime() - start);
+                untilSample = ScanMetrics.SAMPLE_INTERVAL;
+            }
+            if (token.getType() == TokenType.EOF) {
+                break;
+            }
+            counts[token.getType().ordinal()]++;
+            tokens.add(token);
+        }
+        if (metrics != null) {
+            metrics.end(token.getOffset(), token.getLineNumber(), scanner.getCommentCount(),
+                        scanner.getErrorHandler().getTotalCount(), counts);
+        }
+        return tokens;
+    }
+
     public static void main(String[] args) {
 
-        if (args.length == 0) {
-            System.out.println("Usage: java JFlexScanner <inputfile>");
+        boolean showMetrics = args.length == 2 && args[0].equals("-m");
+        if (args.length != 1 && !showMetrics) {
+            System.out.println("Usage: java JFlexScanner [-m] <inputfile>");
+            System.out.println("  -m  also print scan metrics (throughput, time by token type)");
             return;
         }
 
-        try {
-            Yylex scanner = new Yylex(new FileReader(args[0]));
-            Token token;
+        String filename = args[args.length - 1];
+        try (Reader reader = new MappedFileReader(filename)) {
+            Yylex scanner = new Yylex(reader);
+            ScanMetrics metrics = showMetrics ? new ScanMetrics(filename) : null;
+            List<Token> tokens = scan(scanner, metrics);
 
             System.out.println("========================================");
             System.out.println("JFlex Scanner Output");
             System.out.println("========================================");
 
-            while ((token = scanner.yylex()) != null) {
+            for (Token token : tokens) {
                 System.out.println(token);
             }
 
+            scanner.getErrorHandler().displayErrors();
+            if (metrics != null) {
+                metrics.display(System.out);
+            }
+
         } catch (Exception e) {
             e.printStackTrace();
         }
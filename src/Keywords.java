@@ -0,0 +1,129 @@
+/**
+ * Keywords.java
+ * Recognizer for the reserved words of the language: the 12 keywords
+ * plus the boolean literals true and false
+ *
+ * Uses a perfect hash over the first and last character, so a candidate
+ * word is classified with one table probe and one comparison, without
+ * allocating. Shared by the scanner and anything that needs to tell
+ * keywords apart (for example a parser switching on keyword IDs).
+ */
+public final class Keywords {
+    
+    // Keyword IDs
+    public static final int NONE = -1;
+    public static final int START = 0;
+    public static final int FINISH = 1;
+    public static final int LOOP = 2;
+    public static final int CONDITION = 3;
+    public static final int DECLARE = 4;
+    public static final int OUTPUT = 5;
+    public static final int INPUT = 6;
+    public static final int FUNCTION = 7;
+    public static final int RETURN = 8;
+    public static final int BREAK = 9;
+    public static final int CONTINUE = 10;
+    public static final int ELSE = 11;
+    public static final int TRUE = 12;
+    public static final int FALSE = 13;
+    
+    private static final char[][] WORDS = {
+        "start".toCharArray(), "finish".toCharArray(), "loop".toCharArray(),
+        "condition".toCharArray(), "declare".toCharArray(), "output".toCharArray(),
+        "input".toCharArray(), "function".toCharArray(), "return".toCharArray(),
+        "break".toCharArray(), "continue".toCharArray(), "else".toCharArray(),
+        "true".toCharArray(), "false".toCharArray()
+    };
+    
+    /** Length of the longest reserved word */
+    public static final int MAX_LENGTH = 9;
+    
+    // hash(word) = (first + last) & 31 is collision free for the 14 words
+    private static final int HASH_MASK = 31;
+    private static final byte[] SLOTS = new byte[HASH_MASK + 1];
+    
+    static {
+        java.util.Arrays.fill(SLOTS, (byte) NONE);
+        for (int id = 0; id < WORDS.length; id++) {
+            char[] word = WORDS[id];
+            int slot = hash(word[0], word[word.length - 1]);
+            if (SLOTS[slot] != NONE) {
+                throw new IllegalStateException("Keyword hash collision: " + text(id));
+            }
+            SLOTS[slot] = (byte) id;
+        }
+    }
+    
+    private Keywords() {
+    }
+    
+    private static int hash(char first, char last) {
+        return (first + last) & HASH_MASK;
+    }
+    
+    /**
+     * Look up chars[offset, offset + length)
+     * Returns the keyword ID, or NONE if it is not a reserved word
+     */
+    public static int lookup(char[] chars, int offset, int length) {
+        if (length < 4 || length > MAX_LENGTH) {
+            return NONE;
+        }
+        int id = SLOTS[hash(chars[offset], chars[offset + length - 1])];
+        if (id == NONE) {
+            return NONE;
+        }
+        char[] word = WORDS[id];
+        if (word.length != length) {
+            return NONE;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != word[i]) {
+                return NONE;
+            }
+        }
+        return id;
+    }
+    
+    /**
+     * Look up a whole CharSequence
+     */
+    public static int lookup(CharSequence text) {
+        int length = text.length();
+        if (length < 4 || length > MAX_LENGTH) {
+            return NONE;
+        }
+        int id = SLOTS[hash(text.charAt(0), text.charAt(length - 1))];
+        if (id == NONE || WORDS[id].length != length) {
+            return NONE;
+        }
+        char[] word = WORDS[id];
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) != word[i]) {
+                return NONE;
+            }
+        }
+        return id;
+    }
+    
+    /**
+     * Token type of a keyword ID: BOOLEAN_LITERAL for true/false
+     */
+    public static TokenType typeOf(int id) {
+        return (id == TRUE || id == FALSE) ? TokenType.BOOLEAN_LITERAL : TokenType.KEYWORD;
+    }
+    
+    /**
+     * Length of the word with the given ID
+     */
+    public static int length(int id) {
+        return WORDS[id].length;
+    }
+    
+    /**
+     * Text of the word with the given ID
+     */
+    public static String text(int id) {
+        return new String(WORDS[id]);
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lexer.java
+ * Common pull interface of the scanner engines
+ *
+ * ManualScanner (hand-coded DFA) and Yylex (generated by JFlex from
+ * Scanner.flex) both implement it, so callers and benchmarks can use
+ * either engine the same way. Both count tokens, add identifiers to the
+ * symbol table (tokens carry their symbol ID) and report lexical errors
+ * to their ErrorHandler rather than printing them.
+ */
+public interface Lexer extends Iterable<Token> {
+
+    /**
+     * Next token, skipping whitespace and comments
+     * Returns an EOF token at the end of input, and again on every later call.
+     */
+    Token nextToken();
+
+    /**
+     * Symbol table identifiers are added to
+     */
+    SymbolTable getSymbolTable();
+
+    /**
+     * Add identifiers to the given table instead, e.g. one shared by
+     * several lexers; call before the first token is read
+     */
+    void setSymbolTable(SymbolTable symbolTable);
+
+    /**
+     * Error handler lexical errors are reported to
+     */
+    ErrorHandler getErrorHandler();
+
+    /**
+     * Pass errors to sink as they are found instead of collecting them
+     */
+    default void setErrorSink(ErrorSink sink) {
+        getErrorHandler().setSink(sink);
+    }
+
+    /**
+     * Number of tokens returned so far, excluding whitespace, comments and EOF
+     */
+    int getTokenCount();
+
+    /**
+     * Iterate over the remaining tokens, pulling them one at a time
+     * The EOF token is the last element returned
+     */
+    @Override
+    default Iterator<Token> iterator() {
+        return new Iterator<Token>() {
+            private boolean done = false;
+
+            @Override
+            public boolean hasNext() {
+                return !done;
+            }
+
+            @Override
+            public Token next() {
+                if (done) {
+                    throw new NoSuchElementException();
+                }
+                Token token = nextToken();
+                done = token.getType() == TokenType.EOF;
+                return token;
+            }
+        };
+    }
+}
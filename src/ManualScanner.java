@@ -1,5 +1,11 @@
 import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * ManualScanner.java
@@ -12,625 +18,831 @@ import java.util.*;
  * - Line/column tracking
  * - Symbol table management
  * - Comprehensive error handling and recovery
+ * - Streaming input from a Reader through a fixed-size refillable buffer
+ * - Pull-based token API (nextToken / iterator) alongside scan()
+ * - Parallel chunked scanning of in-memory sources (scanParallel)
+ * - Common Lexer interface, shared with the JFlex-generated Yylex
  */
-public class ManualScanner {
+public class ManualScanner implements Lexer {
     
     // Input handling
-    private String sourceCode;
-    private int position;           // current position in source
-    private int length;             // total length of source
+    private char[] buffer;          // window of the source currently in memory
+    private int position;           // current position in buffer
+    private int length;             // number of valid chars in buffer
+    private int bufferOffset;       // source offset of buffer[0]
+    private Reader reader;          // remaining input, null once fully read
+    private final boolean streaming;       // buffer is refilled and reused
+    private boolean pendingCarriageReturn; // last raw char read was '\r'
+    private boolean endsWithNewline;       // last char delivered was '\n'
+    private boolean sawInput;              // at least one char was read
+    
+    private int stopAt;             // no token starts at or after this index
+    
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_PARALLEL_CHUNK = 1 << 20;
+    private static final int OUTPUT_CHUNK = 64 * 1024;  // chars formatted per write
     
     // Position tracking
     private int lineNumber;         // current line (1-indexed)
     private int columnNumber;       // current column (1-indexed)
+    private int tokenStart;         // buffer index where current token started
     private int tokenStartLine;     // line where current token started
     private int tokenStartColumn;   // column where current token started
+    private String editedLexeme;    // lexeme when it is not a plain source slice
+    private int tokenSymbol;        // symbol ID of the current identifier token
+    private boolean discardingToken; // current token text is not kept
+    private final StringBuilder invalidRun = new StringBuilder(); // reported part of a run
     
     // Output collections
-    private List<Token> tokens;
+    private TokenBuffer tokens;
     private SymbolTable symbolTable;
     private ErrorHandler errorHandler;
     
     // Statistics
-    private Map<TokenType, Integer> tokenCounts;
+    private static final TokenType[] TYPES = TokenType.values();
+    private int[] tokenCounts;      // per TokenType ordinal
+    private int tokenCount;
     private int commentCount;
-    
-    // Keywords set for quick lookup
-    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
-        "start", "finish", "loop", "condition", "declare", "output", 
-        "input", "function", "return", "break", "continue", "else"
-    ));
+    private boolean restored;       // results loaded, not scanned
+    private ScanMetrics metrics;    // null: no timing collected
     
     /**
      * Constructor initializes the scanner with source code
      */
     public ManualScanner(String sourceCode) {
-        this.sourceCode = sourceCode;
-        this.length = sourceCode.length();
-        this.position = 0;
-        this.lineNumber = 1;
-        this.columnNumber = 1;
-        
-        this.tokens = new ArrayList<>();
+        this(sourceCode.toCharArray(), null);
+    }
+    
+    /**
+     * Constructor for streaming input with the default buffer size
+     */
+    public ManualScanner(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Constructor for streaming input from a UTF-8 encoded channel
+     */
+    public ManualScanner(ReadableByteChannel channel) {
+        this(Channels.newReader(channel, StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Constructor for streaming input
+     * Only a window of bufferSize chars is kept in memory; the buffer only
+     * grows when a single token is longer than the window. Line endings are
+     * normalized to '\n' and a final newline is added, the same way the
+     * whole-file reader used to prepare its input.
+     */
+    public ManualScanner(Reader reader, int bufferSize) {
+        this(new char[Math.max(bufferSize, 16)], reader);
+        this.length = 0;
+    }
+    
+    private ManualScanner(char[] buffer, Reader reader) {
+        this(buffer, reader, 0, Integer.MAX_VALUE, 1, 1);
+    }
+    
+    /**
+     * Scanner over text[0, length) that starts at start with the given
+     * line/column, for re-lexing part of an edited text (see IncrementalLexer)
+     * Identifiers are added to the given symbol table.
+     */
+    static ManualScanner resumeAt(char[] text, int length, int start, int line, int column,
+                                  SymbolTable symbolTable) {
+        ManualScanner scanner = new ManualScanner(text, null, start, Integer.MAX_VALUE, line, column);
+        scanner.length = length;
+        scanner.symbolTable = symbolTable;
+        return scanner;
+    }
+    
+    /**
+     * Scanner in the state scan() would leave it in, rebuilt from saved
+     * results (see TokenCache); there is no input left to read
+     * Token counts by type are recomputed from the tokens.
+     */
+    static ManualScanner restore(TokenBuffer tokens, SymbolTable symbolTable,
+                                 ErrorHandler errorHandler, int lineCount, int commentCount) {
+        ManualScanner scanner = new ManualScanner(new char[0], null);
+        scanner.tokens = tokens;
+        scanner.symbolTable = symbolTable;
+        scanner.errorHandler = errorHandler;
+        scanner.lineNumber = lineCount;
+        scanner.commentCount = commentCount;
+        scanner.restored = true;
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenType type = tokens.getType(i);
+            if (type != TokenType.EOF) {
+                scanner.tokenCount++;
+                scanner.tokenCounts[type.ordinal()]++;
+            }
+        }
+        return scanner;
+    }
+    
+    /**
+     * Constructor for one chunk of an in-memory source (see scanParallel)
+     * Scanning starts at start with the given line/column and no new token
+     * is started at or after stopAt.
+     */
+    private ManualScanner(char[] buffer, Reader reader, int start, int stopAt,
+                          int line, int column) {
+        this.buffer = buffer;
+        this.length = buffer.length;
+        this.reader = reader;
+        this.streaming = reader != null;
+        this.position = start;
+        this.stopAt = stopAt;
+        this.lineNumber = line;
+        this.columnNumber = column;
+        this.tokenSymbol = SymbolTable.NO_SYMBOL;
+        
+        // In-memory tokens reference the source; streamed ones are copied
+        this.tokens = streaming ? new TokenBuffer() : new TokenBuffer(buffer);
         this.symbolTable = new SymbolTable();
         this.errorHandler = new ErrorHandler();
-        this.tokenCounts = new HashMap<>();
+        this.tokenCounts = new int[TYPES.length];
+        this.tokenCount = 0;
         this.commentCount = 0;
     }
     
     /**
      * Main scanning method - processes entire source code
+     * Tokens are recorded straight into the token buffer, so no Token
+     * objects are created while scanning.
      */
     public void scan() {
-        while (position < length) {
-            tokenStartLine = lineNumber;
-            tokenStartColumn = columnNumber;
-            
-            Token token = getNextToken();
-            
-            if (token != null) {
-                // Don't add whitespace or comment tokens to output
-                // but do count comments for statistics
-                if (token.getType() == TokenType.SINGLE_LINE_COMMENT || 
-                    token.getType() == TokenType.MULTI_LINE_COMMENT) {
-                    commentCount++;
-                } else if (token.getType() != TokenType.WHITESPACE) {
-                    tokens.add(token);
-                    
-                    // Update token counts
-                    tokenCounts.put(token.getType(), 
-                                  tokenCounts.getOrDefault(token.getType(), 0) + 1);
-                    
-                    // Add identifiers to symbol table
-                    if (token.getType() == TokenType.IDENTIFIER) {
-                        symbolTable.addIdentifier(token.getLexeme(), 
-                                                token.getLineNumber(), 
-                                                token.getColumnNumber());
-                    }
-                }
-            }
+        if (metrics == null) {
+            scanRange();
+        } else {
+            metrics.begin(true);
+            scanRangeSampled();
+            finishMetrics();
         }
         
         // Add EOF token
-        Token eofToken = new Token(TokenType.EOF, "", lineNumber, columnNumber);
-        tokens.add(eofToken);
+        recordToken(TokenType.EOF);
     }
     
     /**
-     * Get the next token from the source code
-     * Implements pattern matching priority
+     * Record every token up to the end of input (or stopAt), without EOF
      */
-    private Token getNextToken() {
-        if (position >= length) {
-            return null;
-        }
-        
-        char current = sourceCode.charAt(position);
-        
-        // Priority 1: Multi-line comments #* ... *#
-        if (current == '#' && peek(1) == '*') {
-            return scanMultiLineComment();
-        }
-        
-        // Priority 2: Single-line comments ##
-        if (current == '#' && peek(1) == '#') {
-            return scanSingleLineComment();
-        }
-        
-        // Priority 3: Multi-character operators
-        Token opToken = tryMultiCharOperator();
-        if (opToken != null) {
-            return opToken;
+    private void scanRange() {
+        TokenType type;
+        while ((type = lexToken()) != TokenType.EOF) {
+            recordToken(type);
         }
-        
-        // Priority 4-5: Check for keywords and booleans (lowercase)
-        if (isLowercase(current)) {
-            // Try to match keywords first
-            if (matchWord("start") || matchWord("finish") || matchWord("loop") || 
-                matchWord("condition") || matchWord("declare") || matchWord("output") ||
-                matchWord("input") || matchWord("function") || matchWord("return") ||
-                matchWord("break") || matchWord("continue") || matchWord("else")) {
-                return scanKeyword();
+    }
+    
+    /**
+     * scanRange() that also times every ScanMetrics.SAMPLE_INTERVAL-th token,
+     * so the time per token type can be estimated at little cost
+     */
+    private void scanRangeSampled() {
+        int untilSample = ScanMetrics.SAMPLE_INTERVAL;
+        long start = 0;
+        while (true) {
+            boolean sampled = --untilSample == 0;
+            if (sampled) {
+                start = System.nanoTime();
             }
-            // Try to match boolean literals
-            if (matchWord("true") || matchWord("false")) {
-                return scanBooleanLiteral();
+            TokenType type = lexToken();
+            if (sampled) {
+                metrics.sample(type, System.nanoTime() - start);
+                untilSample = ScanMetrics.SAMPLE_INTERVAL;
             }
-            // If lowercase but not a keyword or boolean, it's an error
-            errorHandler.reportInvalidCharacter(current, lineNumber, columnNumber);
-            advance();
-            return getNextToken();
+            if (type == TokenType.EOF) {
+                return;
+            }
+            recordToken(type);
         }
-        
-        // Priority 6: Identifiers (uppercase start)
-        if (isUppercase(current)) {
-            return scanIdentifier();
+    }
+    
+    private void finishMetrics() {
+        metrics.end(bufferOffset + position, lineNumber, commentCount,
+                    errorHandler.getTotalCount(), tokenCounts);
+    }
+    
+    /**
+     * Parallel version of scan() for in-memory sources, using the common pool
+     */
+    public void scanParallel() {
+        scanParallel(ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Parallel version of scan() for in-memory sources
+     * 
+     * The source is split at line starts that begin with a non-whitespace
+     * character. Since only multi-line comments can span lines, no other
+     * token crosses such a boundary. Newlines are counted per chunk first,
+     * so each chunk is scanned starting at its real line number. Chunks
+     * are then scanned on the pool and merged in order: tokens, symbol
+     * table, statistics and errors. If a multi-line comment ran past the
+     * end of a chunk, the next chunk is scanned again from where the
+     * comment ended. The result is identical to scan(), including the
+     * order of errors.
+     */
+    public void scanParallel(ForkJoinPool pool) {
+        if (streaming || position != 0) {
+            throw new IllegalStateException("scanParallel needs an unscanned in-memory source");
         }
         
-        // Priority 7: Floating-point literals (must check before integers)
-        if (isDigit(current) || (current == '+' || current == '-') && isDigit(peek(1))) {
-            // Look ahead to see if it's a float
-            int tempPos = position;
-            if (current == '+' || current == '-') tempPos++;
-            
-            // Check if there's a decimal point ahead
-            while (tempPos < length && isDigit(sourceCode.charAt(tempPos))) {
-                tempPos++;
-            }
-            
-            if (tempPos < length && sourceCode.charAt(tempPos) == '.') {
-                return scanFloatLiteral();
-            } else {
-                return scanIntegerLiteral();
-            }
+        int[] bounds = chunkBoundaries(pool.getParallelism() * 4);
+        int chunks = bounds.length - 1;
+        if (chunks < 2) {
+            scan();
+            return;
         }
-        
-        // Priority 8: String literals
-        if (current == '"') {
-            return scanStringLiteral();
+        if (metrics != null) {
+            // Chunks run on other threads: totals only, no samples or allocation
+            metrics.begin(false);
         }
         
-        // Priority 9: Character literals
-        if (current == '\'') {
-            return scanCharLiteral();
+        // Line number each chunk starts on
+        List<Callable<Integer>> counts = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            int from = bounds[i];
+            int to = bounds[i + 1];
+            counts.add(() -> countNewlines(from, to));
         }
-        
-        // Priority 10: Single-character operators
-        if (isOperatorChar(current)) {
-            return scanSingleCharOperator();
+        int[] startLines = new int[chunks];
+        startLines[0] = 1;
+        List<Future<Integer>> countResults = pool.invokeAll(counts);
+        for (int i = 1; i < chunks; i++) {
+            startLines[i] = startLines[i - 1] + join(countResults.get(i - 1));
         }
         
-        // Priority 11: Punctuators
-        if (isPunctuator(current)) {
-            return scanPunctuator();
+        // Scan all chunks concurrently
+        List<Callable<ManualScanner>> scans = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            ManualScanner part = new ManualScanner(buffer, null, bounds[i], bounds[i + 1],
+                                                   startLines[i], 1);
+            scans.add(() -> {
+                part.scanRange();
+                return part;
+            });
         }
-        
-        // Priority 12: Whitespace
-        if (isWhitespace(current)) {
-            return scanWhitespace();
+        List<Future<ManualScanner>> parts = pool.invokeAll(scans);
+        
+        // Merge in order, rescanning a chunk whose start was overrun
+        for (int i = 0; i < chunks; i++) {
+            ManualScanner part = join(parts.get(i));
+            if (position != bounds[i]) {
+                if (position >= bounds[i + 1]) {
+                    continue;   // whole chunk was inside a comment
+                }
+                part = new ManualScanner(buffer, null, position, bounds[i + 1],
+                                         lineNumber, columnNumber);
+                part.scanRange();
+            }
+            mergeChunk(part);
         }
         
-        // If we reach here, it's an invalid character
-        errorHandler.reportInvalidCharacter(current, lineNumber, columnNumber);
-        advance(); // Skip the invalid character and continue
-        return getNextToken(); // Try to get the next token
+        if (metrics != null) {
+            finishMetrics();
+        }
+        markTokenStart();
+        recordToken(TokenType.EOF);
     }
     
     /**
-     * Scan multi-line comment: #* ... *#
+     * Split points for scanParallel: 0, safe line starts, source length
      */
-    private Token scanMultiLineComment() {
-        StringBuilder lexeme = new StringBuilder();
-        int startLine = lineNumber;
-        int startCol = columnNumber;
-        
-        lexeme.append(consume()); // #
-        lexeme.append(consume()); // *
-        
-        boolean closed = false;
-        
-        while (position < length) {
-            char current = sourceCode.charAt(position);
-            
-            if (current == '*' && peek(1) == '#') {
-                lexeme.append(consume()); // *
-                lexeme.append(consume()); // #
-                closed = true;
+    private int[] chunkBoundaries(int wanted) {
+        int chunkSize = Math.max(MIN_PARALLEL_CHUNK, length / Math.max(wanted, 1));
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int target = chunkSize;
+        while (target < length) {
+            int split = target;
+            while (split < length && 
+                   (buffer[split - 1] != '\n' || ScannerDfa.classOf(buffer[split]) == ScannerDfa.C_WHITESPACE)) {
+                split++;
+            }
+            if (split >= length) {
                 break;
             }
-            
-            lexeme.append(consume());
+            bounds.add(split);
+            target = split + chunkSize;
         }
+        bounds.add(length);
         
-        if (!closed) {
-            errorHandler.reportUnclosedComment(startLine, startCol);
+        int[] result = new int[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+    
+    private int countNewlines(int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Parallel scan interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
         }
-        
-        return new Token(TokenType.MULTI_LINE_COMMENT, lexeme.toString(), 
-                       startLine, startCol);
     }
     
     /**
-     * Scan single-line comment: ## ...
+     * Append the results of a chunk scanner that ended where this one is
      */
-    private Token scanSingleLineComment() {
-        StringBuilder lexeme = new StringBuilder();
-        int startLine = lineNumber;
-        int startCol = columnNumber;
-        
-        lexeme.append(consume()); // #
-        lexeme.append(consume()); // #
-        
-        // Read until end of line or end of file
-        while (position < length && sourceCode.charAt(position) != '\n') {
-            lexeme.append(consume());
+    private void mergeChunk(ManualScanner part) {
+        int[] symbolMap = symbolTable.mergeFrom(part.symbolTable);
+        tokens.addAll(part.tokens, symbolMap);
+        errorHandler.addAll(part.errorHandler);
+        for (int i = 0; i < tokenCounts.length; i++) {
+            tokenCounts[i] += part.tokenCounts[i];
         }
+        tokenCount += part.tokenCount;
+        commentCount += part.commentCount;
         
-        return new Token(TokenType.SINGLE_LINE_COMMENT, lexeme.toString(), 
-                       startLine, startCol);
+        position = part.position;
+        lineNumber = part.lineNumber;
+        columnNumber = part.columnNumber;
     }
     
     /**
-     * Try to match multi-character operators
-     * Returns null if no match found
+     * Append the token just lexed to the token buffer
      */
-    private Token tryMultiCharOperator() {
-        char current = sourceCode.charAt(position);
-        char next = peek(1);
-        
-        // Two-character operators
-        String twoChar = "" + current + next;
-        
-        switch (twoChar) {
-            case "**":
-                return createOpToken(twoChar, TokenType.ARITHMETIC_OP);
-            case "==":
-            case "!=":
-            case "<=":
-            case ">=":
-                return createOpToken(twoChar, TokenType.RELATIONAL_OP);
-            case "&&":
-            case "||":
-                return createOpToken(twoChar, TokenType.LOGICAL_OP);
-            case "++":
-                return createOpToken(twoChar, TokenType.INCREMENT_OP);
-            case "--":
-                return createOpToken(twoChar, TokenType.DECREMENT_OP);
-            case "+=":
-            case "-=":
-            case "*=":
-            case "/=":
-                return createOpToken(twoChar, TokenType.ASSIGNMENT_OP);
+    private void recordToken(TokenType type) {
+        int offset = bufferOffset + tokenStart;
+        if (editedLexeme != null) {
+            tokens.add(type, editedLexeme, offset, tokenStartLine, tokenStartColumn);
+        } else {
+            tokens.add(type, buffer, tokenStart, position - tokenStart, offset, 
+                      tokenStartLine, tokenStartColumn);
+        }
+        if (tokenSymbol != SymbolTable.NO_SYMBOL) {
+            tokens.setSymbolId(tokens.size() - 1, tokenSymbol);
         }
-        
-        return null;
     }
     
     /**
-     * Helper to create operator token and advance position
+     * Pull-based scanning - returns the next token without materializing
+     * the whole stream. Whitespace and comments are skipped, and statistics
+     * and the symbol table are updated as each token is returned.
+     * Returns an EOF token at the end of input, and again on every later call.
      */
-    private Token createOpToken(String op, TokenType type) {
-        int startLine = lineNumber;
-        int startCol = columnNumber;
-        for (int i = 0; i < op.length(); i++) {
-            consume();
-        }
-        return new Token(type, op, startLine, startCol);
+    @Override
+    public Token nextToken() {
+        TokenType type = lexToken();
+        return makeToken(type);
     }
     
     /**
-     * Scan boolean literal: true or false
+     * Build a Token for the range just lexed
+     * In-memory sources are referenced without copying; streamed input is
+     * copied once since the buffer is reused.
      */
-    private Token scanBooleanLiteral() {
-        StringBuilder lexeme = new StringBuilder();
-        int startCol = columnNumber;
-        
-        while (position < length && isLetter(sourceCode.charAt(position))) {
-            lexeme.append(consume());
+    private Token makeToken(TokenType type) {
+        int offset = bufferOffset + tokenStart;
+        Token token;
+        if (editedLexeme != null) {
+            token = new Token(type, editedLexeme, offset, tokenStartLine, tokenStartColumn);
+        } else if (!streaming) {
+            token = new Token(type, buffer, tokenStart, position - tokenStart, 
+                            tokenStartLine, tokenStartColumn);
+        } else {
+            token = new Token(type, new String(buffer, tokenStart, position - tokenStart), 
+                            offset, tokenStartLine, tokenStartColumn);
         }
-        
-        return new Token(TokenType.BOOLEAN_LITERAL, lexeme.toString(), 
-                       lineNumber, startCol);
+        token.setSymbolId(tokenSymbol);
+        return token;
     }
     
     /**
-     * Scan keyword
+     * Lex the next significant token, skipping whitespace and comments
+     * The token is left in tokenStart..position with its start line/column.
      */
-    private Token scanKeyword() {
-        StringBuilder lexeme = new StringBuilder();
-        int startCol = columnNumber;
-        
-        while (position < length && isLetter(sourceCode.charAt(position))) {
-            lexeme.append(consume());
+    private TokenType lexToken() {
+        tokenSymbol = SymbolTable.NO_SYMBOL;
+        while (position < stopAt && ensure(0)) {
+            TokenType type = getNextToken();
+            
+            if (type == null) {
+                continue;
+            }
+            
+            // Don't return whitespace or comment tokens
+            // but do count comments for statistics
+            if (type == TokenType.SINGLE_LINE_COMMENT || 
+                type == TokenType.MULTI_LINE_COMMENT) {
+                commentCount++;
+            } else if (type != TokenType.WHITESPACE) {
+                // Update token counts
+                tokenCount++;
+                tokenCounts[type.ordinal()]++;
+                
+                // Add identifiers to symbol table
+                // (keyed on the buffer range; only new names allocate)
+                if (type == TokenType.IDENTIFIER) {
+                    tokenSymbol = symbolTable.addIdentifier(buffer, tokenStart, 
+                                                            position - tokenStart,
+                                                            tokenStartLine, 
+                                                            tokenStartColumn);
+                }
+                return type;
+            }
         }
         
-        return new Token(TokenType.KEYWORD, lexeme.toString(), lineNumber, startCol);
+        markTokenStart();
+        return TokenType.EOF;
     }
     
     /**
-     * Scan identifier: [A-Z][a-z0-9_]{0,30}
-     * Also checks if it's a keyword
+     * Get the next token from the source code
+     * Implements pattern matching priority through the ScannerDfa tables:
+     * one table lookup per character, no allocation.
+     * Returns the token type; the lexeme is buffer[tokenStart, position)
      */
-    private Token scanIdentifier() {
-        StringBuilder lexeme = new StringBuilder();
-        int startCol = columnNumber;
+    private TokenType getNextToken() {
+        if (!ensure(0)) {
+            return null;
+        }
         
-        // First character must be uppercase
-        lexeme.append(consume());
+        markTokenStart();
+        char current = buffer[position];
+        int state = ScannerDfa.start(current);
         
-        // Subsequent characters can be lowercase, digits, or underscores
-        while (position < length) {
-            char ch = sourceCode.charAt(position);
-            if (isLowercase(ch) || isDigit(ch) || ch == '_') {
-                lexeme.append(consume());
-            } else {
+        if (state < 0) {
+            return scanSpecialToken(state, current);
+        }
+        
+        // Whitespace text is never needed, so let the buffer drop it
+        discardingToken = ScannerDfa.accept(state) == TokenType.WHITESPACE;
+        
+        // Run the DFA until no transition applies (longest match)
+        consume();
+        while (ensure(0)) {
+            int next = ScannerDfa.next(state, buffer[position]);
+            if (next < 0) {
                 break;
             }
+            state = next;
+            consume();
         }
         
-        String identifier = lexeme.toString();
+        TokenType type = ScannerDfa.accept(state);
         
-        // Check length constraint
-        if (identifier.length() > 31) {
-            errorHandler.reportInvalidIdentifier(identifier, lineNumber, startCol,
-                "Identifier exceeds maximum length of 31 characters");
+        // Identifiers: [A-Z][a-z0-9_]{0,30}
+        if (type == TokenType.IDENTIFIER && position - tokenStart > 31) {
+            errorHandler.report(ErrorCode.IDENTIFIER_TOO_LONG, tokenOffset(), lineNumber,
+                                tokenStartColumn, tokenText());
         }
         
-        // Check if it's a keyword
-        if (KEYWORDS.contains(identifier)) {
-            return new Token(TokenType.KEYWORD, identifier, lineNumber, startCol);
+        if (ScannerDfa.flags(state) != 0) {
+            reportFloatErrors(ScannerDfa.flags(state));
+        }
+        return type;
+    }
+    
+    /**
+     * Handle the tokens the DFA start row delegates to the scanner
+     */
+    private TokenType scanSpecialToken(int action, char current) {
+        switch (action) {
+            case ScannerDfa.ACTION_HASH:
+                // Priority 1: Multi-line comments #* ... *#
+                if (peek(1) == '*') {
+                    return scanMultiLineComment();
+                }
+                // Priority 2: Single-line comments ##
+                if (peek(1) == '#') {
+                    return scanSingleLineComment();
+                }
+                break;
+            case ScannerDfa.ACTION_WORD:
+                // Priority 4-5: Keywords and boolean literals
+                int keyword = matchKeyword();
+                if (keyword != Keywords.NONE) {
+                    for (int i = Keywords.length(keyword); i > 0; i--) {
+                        consume();
+                    }
+                    return Keywords.typeOf(keyword);
+                }
+                // If lowercase but not a keyword or boolean, it's an error
+                break;
+            case ScannerDfa.ACTION_STRING:
+                // Priority 9: String literals
+                return scanStringLiteral();
+            case ScannerDfa.ACTION_CHAR:
+                // Priority 10: Character literals
+                return scanCharLiteral();
+            default:
+                break;
         }
         
-        return new Token(TokenType.IDENTIFIER, identifier, lineNumber, startCol);
+        // If we reach here, it's an invalid character
+        skipInvalidRun();
+        return null;
     }
     
     /**
-     * Scan integer literal: [+-]?[0-9]+
+     * Skip the invalid character at the token start and every invalid
+     * character right after it, reporting the run as one error
+     * Runs in a loop, so any amount of junk takes constant stack; the
+     * run ends at whitespace or wherever a valid token could start.
      */
-    private Token scanIntegerLiteral() {
-        StringBuilder lexeme = new StringBuilder();
-        int startCol = columnNumber;
+    private void skipInvalidRun() {
+        discardingToken = true;
+        invalidRun.setLength(0);
+        int runLength = 0;
+        do {
+            char ch = consume();
+            if (runLength < ErrorHandler.MAX_RUN_LEXEME) {
+                invalidRun.append(ch);
+            }
+            runLength++;
+        } while (position < stopAt && ensure(0) && isInvalidStart(buffer[position]));
         
-        // Optional sign
-        char current = sourceCode.charAt(position);
-        if (current == '+' || current == '-') {
-            lexeme.append(consume());
+        errorHandler.report(ErrorCode.INVALID_CHARACTER, tokenOffset(), tokenStartLine, 
+                            tokenStartColumn, invalidRun, runLength);
+    }
+    
+    /**
+     * True if no token can start with ch at the current position
+     */
+    private boolean isInvalidStart(char ch) {
+        switch (ScannerDfa.start(ch)) {
+            case ScannerDfa.ACTION_INVALID:
+                return true;
+            case ScannerDfa.ACTION_HASH:
+                return peek(1) != '*' && peek(1) != '#';
+            case ScannerDfa.ACTION_WORD:
+                return matchKeyword() == Keywords.NONE;
+            default:
+                return false;
         }
-        
-        // Digits
-        if (!isDigit(sourceCode.charAt(position))) {
-            errorHandler.reportMalformedNumber(lexeme.toString(), lineNumber, startCol,
-                "Expected digit after sign");
-            return new Token(TokenType.ERROR, lexeme.toString(), lineNumber, startCol);
+    }
+    
+    /**
+     * Report problems in a floating-point literal the DFA just accepted
+     * Fraction errors use the lexeme up to the exponent, as they are found
+     * before the exponent is read.
+     */
+    private void reportFloatErrors(int flags) {
+        int startCol = tokenStartColumn;
+        
+        if ((flags & (ScannerDfa.FRACTION_MISSING | ScannerDfa.FRACTION_TOO_LONG)) != 0) {
+            int fractionEnd = position;
+            if ((flags & ScannerDfa.EXPONENT) != 0) {
+                // Back over [eE][+-]?[0-9]*
+                while (isDigit(buffer[fractionEnd - 1])) {
+                    fractionEnd--;
+                }
+                if (buffer[fractionEnd - 1] == '+' || buffer[fractionEnd - 1] == '-') {
+                    fractionEnd--;
+                }
+                fractionEnd--;
+            }
+            CharBuffer lexeme = CharBuffer.wrap(buffer, tokenStart, fractionEnd - tokenStart);
+            ErrorCode code = (flags & ScannerDfa.FRACTION_MISSING) != 0
+                             ? ErrorCode.MISSING_FRACTION : ErrorCode.FRACTION_TOO_LONG;
+            errorHandler.report(code, tokenOffset(), lineNumber, startCol, lexeme);
         }
         
-        while (position < length && isDigit(sourceCode.charAt(position))) {
-            lexeme.append(consume());
+        if ((flags & ScannerDfa.EXPONENT_MISSING) != 0) {
+            errorHandler.report(ErrorCode.MISSING_EXPONENT, tokenOffset(), lineNumber, startCol,
+                                tokenText());
         }
-        
-        return new Token(TokenType.INTEGER_LITERAL, lexeme.toString(), 
-                       lineNumber, startCol);
     }
     
     /**
-     * Scan floating-point literal: [+-]?[0-9]+\.[0-9]{1,6}([eE][+-]?[0-9]+)?
+     * Remember where the token being scanned starts
+     */
+    private void markTokenStart() {
+        tokenStart = position;
+        tokenStartLine = lineNumber;
+        tokenStartColumn = columnNumber;
+        editedLexeme = null;
+        discardingToken = false;
+    }
+    
+    /**
+     * Lexeme of the token scanned so far, as a new String
+     * Only used where a String is really needed (error reports, symbols)
+     */
+    private String currentLexeme() {
+        return new String(buffer, tokenStart, position - tokenStart);
+    }
+    
+    /**
+     * Lexeme of the token scanned so far, as a view of the buffer
+     * Only valid until the buffer is refilled
+     */
+    private CharSequence tokenText() {
+        return CharBuffer.wrap(buffer, tokenStart, position - tokenStart);
+    }
+    
+    /**
+     * Source offset of the token being scanned
+     */
+    private int tokenOffset() {
+        return bufferOffset + tokenStart;
+    }
+    
+    /**
+     * Scan multi-line comment: #* ... *#
      */
-    private Token scanFloatLiteral() {
-        StringBuilder lexeme = new StringBuilder();
-        int startCol = columnNumber;
+    private TokenType scanMultiLineComment() {
+        // Comment text is never needed, so let the buffer drop it
+        discardingToken = true;
         
-        // Optional sign
-        char current = sourceCode.charAt(position);
-        if (current == '+' || current == '-') {
-            lexeme.append(consume());
-        }
+        consume(); // #
+        consume(); // *
         
-        // Integer part
-        while (position < length && isDigit(sourceCode.charAt(position))) {
-            lexeme.append(consume());
-        }
+        boolean closed = false;
         
-        // Decimal point
-        if (position < length && sourceCode.charAt(position) == '.') {
-            lexeme.append(consume());
-        } else {
-            errorHandler.reportMalformedNumber(lexeme.toString(), lineNumber, startCol,
-                "Expected decimal point for floating-point literal");
-            return new Token(TokenType.ERROR, lexeme.toString(), lineNumber, startCol);
+        while (ensure(0)) {
+            char current = buffer[position];
+            
+            if (current == '*' && peek(1) == '#') {
+                consume(); // *
+                consume(); // #
+                closed = true;
+                break;
+            }
+            
+            consume();
         }
         
-        // Fractional part (1-6 digits)
-        int decimalDigits = 0;
-        while (position < length && isDigit(sourceCode.charAt(position))) {
-            lexeme.append(consume());
-            decimalDigits++;
+        if (!closed) {
+            errorHandler.report(ErrorCode.UNCLOSED_COMMENT, tokenOffset(), tokenStartLine,
+                                tokenStartColumn, "#*", position - tokenStart);
         }
         
-        if (decimalDigits == 0) {
-            errorHandler.reportMalformedNumber(lexeme.toString(), lineNumber, startCol,
-                "Missing fractional part after decimal point");
-        } else if (decimalDigits > 6) {
-            errorHandler.reportMalformedNumber(lexeme.toString(), lineNumber, startCol,
-                "Too many decimal digits (maximum 6 allowed)");
-        }
+        return TokenType.MULTI_LINE_COMMENT;
+    }
+    
+    /**
+     * Scan single-line comment: ## ...
+     */
+    private TokenType scanSingleLineComment() {
+        discardingToken = true;
         
-        // Optional exponent
-        if (position < length && (sourceCode.charAt(position) == 'e' || 
-                                  sourceCode.charAt(position) == 'E')) {
-            lexeme.append(consume());
-            
-            // Optional sign in exponent
-            if (position < length && (sourceCode.charAt(position) == '+' || 
-                                     sourceCode.charAt(position) == '-')) {
-                lexeme.append(consume());
-            }
-            
-            // Exponent digits
-            int expDigits = 0;
-            while (position < length && isDigit(sourceCode.charAt(position))) {
-                lexeme.append(consume());
-                expDigits++;
-            }
-            
-            if (expDigits == 0) {
-                errorHandler.reportMalformedNumber(lexeme.toString(), lineNumber, startCol,
-                    "Missing exponent digits after 'e' or 'E'");
-            }
+        consume(); // #
+        consume(); // #
+        
+        // Read until end of line or end of file
+        while (ensure(0) && buffer[position] != '\n') {
+            consume();
         }
         
-        return new Token(TokenType.FLOAT_LITERAL, lexeme.toString(), 
-                       lineNumber, startCol);
+        return TokenType.SINGLE_LINE_COMMENT;
     }
     
     /**
      * Scan string literal: "..."
      * Supports escape sequences: \", \\, \n, \t, \r
+     * An invalid escaped character is left out of the lexeme; only then is
+     * the lexeme copied into an edited String.
      */
-    private Token scanStringLiteral() {
-        StringBuilder lexeme = new StringBuilder();
-        int startLine = lineNumber;
-        int startCol = columnNumber;
+    private TokenType scanStringLiteral() {
+        StringBuilder edited = null;
         
-        lexeme.append(consume()); // opening "
+        consume(); // opening "
         
         boolean closed = false;
         
-        while (position < length) {
-            char ch = sourceCode.charAt(position);
+        while (ensure(0)) {
+            char ch = buffer[position];
             
             if (ch == '\n') {
                 // Newline in string - error
-                errorHandler.reportUnterminatedString(lexeme.toString(), 
-                                                     startLine, startCol);
+                errorHandler.report(ErrorCode.UNTERMINATED_STRING, tokenOffset(), tokenStartLine,
+                                    tokenStartColumn, lexemeSoFar(edited));
                 break;
             }
             
             if (ch == '"') {
-                lexeme.append(consume());
+                keep(edited, consume());
                 closed = true;
                 break;
             }
             
             if (ch == '\\') {
-                lexeme.append(consume()); // backslash
-                if (position < length) {
-                    char escaped = sourceCode.charAt(position);
+                keep(edited, consume()); // backslash
+                if (ensure(0)) {
+                    char escaped = buffer[position];
                     if (escaped == '"' || escaped == '\\' || escaped == 'n' || 
                         escaped == 't' || escaped == 'r') {
-                        lexeme.append(consume());
+                        keep(edited, consume());
                     } else {
-                        errorHandler.reportInvalidEscape("\\" + escaped, 
-                                                        lineNumber, columnNumber);
+                        errorHandler.report(ErrorCode.INVALID_ESCAPE, bufferOffset + position,
+                                            lineNumber, columnNumber,
+                                            CharBuffer.wrap(buffer, position - 1, 2));
+                        if (edited == null) {
+                            edited = new StringBuilder(currentLexeme());
+                        }
                         consume(); // skip the invalid escape
                     }
                 }
             } else {
-                lexeme.append(consume());
+                keep(edited, consume());
             }
         }
         
         if (!closed) {
-            errorHandler.reportUnterminatedString(lexeme.toString(), 
-                                                 startLine, startCol);
+            errorHandler.report(ErrorCode.UNTERMINATED_STRING, tokenOffset(), tokenStartLine,
+                                tokenStartColumn, lexemeSoFar(edited));
         }
         
-        return new Token(TokenType.STRING_LITERAL, lexeme.toString(), 
-                       startLine, startCol);
+        if (edited != null) {
+            editedLexeme = edited.toString();
+        }
+        return TokenType.STRING_LITERAL;
     }
     
     /**
      * Scan character literal: '.'
      * Supports escape sequences: \', \\, \n, \t, \r
      */
-    private Token scanCharLiteral() {
-        StringBuilder lexeme = new StringBuilder();
-        int startLine = lineNumber;
-        int startCol = columnNumber;
+    private TokenType scanCharLiteral() {
+        StringBuilder edited = null;
         
-        lexeme.append(consume()); // opening '
+        consume(); // opening '
         
         boolean closed = false;
         int charCount = 0;
         
-        while (position < length && charCount < 3) {
-            char ch = sourceCode.charAt(position);
+        while (ensure(0) && charCount < 3) {
+            char ch = buffer[position];
             
             if (ch == '\n') {
-                errorHandler.reportUnterminatedChar(lexeme.toString(), 
-                                                   startLine, startCol);
+                errorHandler.report(ErrorCode.UNTERMINATED_CHAR, tokenOffset(), tokenStartLine,
+                                    tokenStartColumn, lexemeSoFar(edited));
                 break;
             }
             
             if (ch == '\'') {
-                lexeme.append(consume());
+                keep(edited, consume());
                 closed = true;
                 break;
             }
             
             if (ch == '\\') {
-                lexeme.append(consume());
+                keep(edited, consume());
                 charCount++;
-                if (position < length) {
-                    char escaped = sourceCode.charAt(position);
+                if (ensure(0)) {
+                    char escaped = buffer[position];
                     if (escaped == '\'' || escaped == '\\' || escaped == 'n' || 
                         escaped == 't' || escaped == 'r') {
-                        lexeme.append(consume());
+                        keep(edited, consume());
                     } else {
-                        errorHandler.reportInvalidEscape("\\" + escaped, 
-                                                        lineNumber, columnNumber);
+                        errorHandler.report(ErrorCode.INVALID_ESCAPE, bufferOffset + position,
+                                            lineNumber, columnNumber,
+                                            CharBuffer.wrap(buffer, position - 1, 2));
+                        if (edited == null) {
+                            edited = new StringBuilder(currentLexeme());
+                        }
                         consume();
                     }
                 }
             } else {
-                lexeme.append(consume());
+                keep(edited, consume());
                 charCount++;
             }
         }
         
         if (!closed) {
-            errorHandler.reportUnterminatedChar(lexeme.toString(), 
-                                               startLine, startCol);
+            errorHandler.report(ErrorCode.UNTERMINATED_CHAR, tokenOffset(), tokenStartLine,
+                                tokenStartColumn, lexemeSoFar(edited));
         }
         
-        return new Token(TokenType.CHAR_LITERAL, lexeme.toString(), 
-                       startLine, startCol);
-    }
-    
-    /**
-     * Scan single-character operator
-     */
-    private Token scanSingleCharOperator() {
-        char ch = consume();
-        TokenType type;
-        
-        switch (ch) {
-            case '+':
-            case '-':
-            case '*':
-            case '/':
-            case '%':
-                type = TokenType.ARITHMETIC_OP;
-                break;
-            case '<':
-            case '>':
-                type = TokenType.RELATIONAL_OP;
-                break;
-            case '!':
-                type = TokenType.LOGICAL_OP;
-                break;
-            case '=':
-                type = TokenType.ASSIGNMENT_OP;
-                break;
-            default:
-                type = TokenType.ERROR;
+        if (edited != null) {
+            editedLexeme = edited.toString();
         }
-        
-        return new Token(type, String.valueOf(ch), lineNumber, 
-                       columnNumber - 1);
+        return TokenType.CHAR_LITERAL;
     }
     
     /**
-     * Scan punctuator
+     * Append ch to an edited lexeme, if one has been started
      */
-    private Token scanPunctuator() {
-        char ch = consume();
-        return new Token(TokenType.PUNCTUATOR, String.valueOf(ch), 
-                       lineNumber, columnNumber - 1);
+    private void keep(StringBuilder edited, char ch) {
+        if (edited != null) {
+            edited.append(ch);
+        }
     }
     
-    /**
-     * Scan whitespace (spaces, tabs, newlines)
-     */
-    private Token scanWhitespace() {
-        StringBuilder lexeme = new StringBuilder();
-        int startCol = columnNumber;
-        
-        while (position < length && isWhitespace(sourceCode.charAt(position))) {
-            lexeme.append(consume());
-        }
-        
-        return new Token(TokenType.WHITESPACE, lexeme.toString(), 
-                       lineNumber, startCol);
+    private CharSequence lexemeSoFar(StringBuilder edited) {
+        return edited != null ? edited : tokenText();
     }
     
     // ==================== Helper Methods ====================
@@ -640,7 +852,7 @@ public class ManualScanner {
      * Returns the character that was consumed
      */
     private char consume() {
-        char ch = sourceCode.charAt(position);
+        char ch = buffer[position];
         position++;
         
         if (ch == '\n') {
@@ -657,45 +869,121 @@ public class ManualScanner {
      * Look ahead at character at offset from current position
      */
     private char peek(int offset) {
-        int pos = position + offset;
-        if (pos < length) {
-            return sourceCode.charAt(pos);
+        if (ensure(offset)) {
+            return buffer[position + offset];
         }
         return '\0';
     }
     
     /**
-     * Advance position without returning character
+     * Make sure the character at offset ahead of the current position is
+     * in the buffer. Returns false if the input ends before it.
      */
-    private void advance() {
-        if (position < length) {
-            consume();
-        }
+    private boolean ensure(int ahead) {
+        return position + ahead < length || fill(position + ahead);
     }
     
     /**
-     * Check if a word matches at current position
+     * Refill the buffer from the reader until index needed is available.
+     * Characters before the current token are discarded first, and the
+     * buffer only grows when the token plus lookahead does not fit in it.
      */
-    private boolean matchWord(String word) {
-        if (position + word.length() > length) {
+    private boolean fill(int needed) {
+        if (reader == null) {
             return false;
         }
         
-        String substring = sourceCode.substring(position, position + word.length());
+        // Drop everything already consumed, keeping the current token's text
+        int keep = discardingToken ? position : Math.min(tokenStart, position);
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, length - keep);
+            length -= keep;
+            needed -= keep;
+            position -= keep;
+            tokenStart -= keep;
+            bufferOffset += keep;
+        }
         
-        if (!substring.equals(word)) {
-            return false;
+        try {
+            while (needed >= length) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                
+                int read = reader.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    reader = null;
+                    // Every line ends with a newline, like BufferedReader lines
+                    if (sawInput && !endsWithNewline) {
+                        if (length == buffer.length) {
+                            buffer = Arrays.copyOf(buffer, buffer.length + 1);
+                        }
+                        buffer[length++] = '\n';
+                        endsWithNewline = true;
+                    }
+                    return needed < length;
+                }
+                if (read > 0) {
+                    sawInput = true;
+                    length = normalizeLineEndings(length, length + read);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return true;
+    }
+    
+    /**
+     * Rewrite buffer[from, to) in place, turning "\r\n" and lone '\r' into
+     * '\n'. Returns the new end of the valid region.
+     */
+    private int normalizeLineEndings(int from, int to) {
+        int out = from;
+        for (int i = from; i < to; i++) {
+            char ch = buffer[i];
+            if (pendingCarriageReturn) {
+                pendingCarriageReturn = false;
+                if (ch == '\n') {
+                    continue;
+                }
+            }
+            if (ch == '\r') {
+                pendingCarriageReturn = true;
+                ch = '\n';
+            }
+            buffer[out++] = ch;
+        }
+        if (out > from) {
+            endsWithNewline = buffer[out - 1] == '\n';
+        }
+        return out;
+    }
+    
+    /**
+     * Classify the lowercase word at the current position in one pass
+     * Returns a Keywords ID, or Keywords.NONE if the word is not reserved or
+     * is part of a larger identifier-like word. Nothing is consumed.
+     */
+    private int matchKeyword() {
+        int wordLength = 0;
+        while (wordLength <= Keywords.MAX_LENGTH && ensure(wordLength) && 
+               isLowercase(buffer[position + wordLength])) {
+            wordLength++;
+        }
+        if (wordLength > Keywords.MAX_LENGTH) {
+            return Keywords.NONE;
         }
         
         // Check that it's not part of a larger identifier
-        if (position + word.length() < length) {
-            char nextChar = sourceCode.charAt(position + word.length());
+        if (ensure(wordLength)) {
+            char nextChar = buffer[position + wordLength];
             if (isLetter(nextChar) || isDigit(nextChar) || nextChar == '_') {
-                return false;
+                return Keywords.NONE;
             }
         }
         
-        return true;
+        return Keywords.lookup(buffer, position, wordLength);
     }
     
     // Character classification methods
@@ -715,137 +1003,237 @@ public class ManualScanner {
         return ch >= '0' && ch <= '9';
     }
     
-    private boolean isWhitespace(char ch) {
-        return ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n';
-    }
-    
-    private boolean isOperatorChar(char ch) {
-        return ch == '+' || ch == '-' || ch == '*' || ch == '/' || ch == '%' ||
-               ch == '=' || ch == '<' || ch == '>' || ch == '!' || ch == '&' || ch == '|';
-    }
-    
-    private boolean isPunctuator(char ch) {
-        return ch == '(' || ch == ')' || ch == '{' || ch == '}' ||
-               ch == '[' || ch == ']' || ch == ',' || ch == ';' || ch == ':';
-    }
-    
     // ==================== Output Methods ====================
     
     /**
      * Display all tokens in required format
      */
     public void displayTokens() {
-        System.out.println("\n" + "=".repeat(80));
-        System.out.println("TOKENS");
-        System.out.println("=".repeat(80));
-        
-        for (Token token : tokens) {
-            if (token.getType() != TokenType.EOF) {
-                System.out.println(token);
+        displayTokens(System.out);
+    }
+    
+    /**
+     * Display all tokens to the given stream
+     */
+    public void displayTokens(PrintStream out) {
+        out.println("\n" + "=".repeat(80));
+        out.println("TOKENS");
+        out.println("=".repeat(80));
+        
+        // Format into one large buffer, written out a chunk at a time
+        String newline = System.lineSeparator();
+        StringBuilder chunk = new StringBuilder(OUTPUT_CHUNK + 256);
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.getType(i) != TokenType.EOF) {
+                tokens.appendTo(i, chunk).append(newline);
+                if (chunk.length() >= OUTPUT_CHUNK) {
+                    out.append(chunk);
+                    chunk.setLength(0);
+                }
             }
         }
+        out.append(chunk);
         
-        System.out.println("=".repeat(80) + "\n");
+        out.println("=".repeat(80) + "\n");
     }
     
     /**
      * Display scanning statistics
      */
     public void displayStatistics() {
-        System.out.println("\n" + "=".repeat(80));
-        System.out.println("SCANNING STATISTICS");
-        System.out.println("=".repeat(80));
+        displayStatistics(System.out);
+    }
+    
+    /**
+     * Display scanning statistics to the given stream
+     */
+    public void displayStatistics(PrintStream out) {
+        out.println("\n" + "=".repeat(80));
+        out.println("SCANNING STATISTICS");
+        out.println("=".repeat(80));
         
-        System.out.println("Total tokens (excluding whitespace & comments): " + 
-                         (tokens.size() - 1)); // -1 for EOF
-        System.out.println("Lines processed: " + lineNumber);
-        System.out.println("Comments removed: " + commentCount);
+        out.println("Total tokens (excluding whitespace & comments): " + 
+                         tokenCount);
+        out.println("Lines processed: " + lineNumber);
+        out.println("Comments removed: " + commentCount);
         
-        System.out.println("\nToken count by type:");
-        System.out.println("-".repeat(50));
+        out.println("\nToken count by type:");
+        out.println("-".repeat(50));
         
         // Sort token types for consistent output
-        List<Map.Entry<TokenType, Integer>> sortedCounts = 
-            new ArrayList<>(tokenCounts.entrySet());
-        sortedCounts.sort((a, b) -> a.getKey().toString().compareTo(b.getKey().toString()));
+        TokenType[] sortedTypes = TYPES.clone();
+        Arrays.sort(sortedTypes, Comparator.comparing(TokenType::toString));
         
-        for (Map.Entry<TokenType, Integer> entry : sortedCounts) {
-            System.out.printf("  %-25s: %d%n", entry.getKey(), entry.getValue());
+        for (TokenType type : sortedTypes) {
+            if (tokenCounts[type.ordinal()] > 0) {
+                out.printf("  %-25s: %d%n", type, tokenCounts[type.ordinal()]);
+            }
         }
         
-        System.out.println("=".repeat(80) + "\n");
+        out.println("=".repeat(80) + "\n");
     }
     
     /**
      * Get tokens list (for external use)
+     * Only filled by scan(); tokens pulled through nextToken() are not kept.
+     * Token objects are created on access from the compact token buffer.
      */
     public List<Token> getTokens() {
+        return tokens.asList();
+    }
+    
+    /**
+     * Get the compact token buffer filled by scan() (for external use)
+     */
+    public TokenBuffer getTokenBuffer() {
         return tokens;
     }
     
     /**
      * Get symbol table (for external use)
      */
+    @Override
     public SymbolTable getSymbolTable() {
         return symbolTable;
     }
     
+    /**
+     * Add identifiers to the given table instead of this scanner's own
+     */
+    @Override
+    public void setSymbolTable(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+    
     /**
      * Get error handler (for external use)
      */
+    @Override
     public ErrorHandler getErrorHandler() {
         return errorHandler;
     }
     
+    /**
+     * Number of lines processed by scan()
+     */
+    public int getLineCount() {
+        return lineNumber;
+    }
+    
+    /**
+     * Collect timing and throughput into metrics during scan() or
+     * scanParallel(); null (the default) collects nothing
+     */
+    public void setMetrics(ScanMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Metrics of the last scan, or null if none were collected
+     */
+    public ScanMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * True if the results were loaded from a TokenCache rather than scanned
+     */
+    public boolean isRestored() {
+        return restored;
+    }
+    
+    /**
+     * Number of comments skipped by scan()
+     */
+    public int getCommentCount() {
+        return commentCount;
+    }
+    
+    /**
+     * Number of tokens, excluding whitespace and comments
+     */
+    @Override
+    public int getTokenCount() {
+        return tokenCount;
+    }
+    
     // ==================== Main Method ====================
     
     /**
-     * Main method for testing the scanner
+     * Scan a file and write the full report (tokens, statistics, symbol
+     * table, errors) to out, as main does for a single file
      */
-    public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java ManualScanner <source-file>");
-            System.out.println("Example: java ManualScanner test1.lang");
-            return;
+    public static ManualScanner scanFile(String filename, PrintStream out) throws IOException {
+        return scanFile(filename, out, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Scan a file and write the report, collecting at most errorLimit errors
+     */
+    public static ManualScanner scanFile(String filename, PrintStream out, int errorLimit) 
+            throws IOException {
+        return scanFile(filename, out, errorLimit, null);
+    }
+    
+    /**
+     * Scan a file and write the report, loading the results from cache
+     * instead when the file is unchanged since it was last scanned there
+     * (null scans as usual)
+     */
+    public static ManualScanner scanFile(String filename, PrintStream out, int errorLimit,
+                                         TokenCache cache) throws IOException {
+        ManualScanner scanner;
+        if (cache != null) {
+            out.println("Scanning file: " + filename);
+            out.println("=".repeat(80));
+            scanner = cache.scan(Paths.get(filename), errorLimit);
+        } else {
+            try (Reader reader = new MappedFileReader(filename)) {
+                out.println("Scanning file: " + filename);
+                out.println("=".repeat(80));
+                
+                // Create scanner and process, streaming the mapped file through a buffer
+                scanner = new ManualScanner(reader);
+                scanner.getErrorHandler().setErrorLimit(errorLimit);
+                scanner.setMetrics(new ScanMetrics(filename));
+                scanner.scan();
+            }
         }
         
-        String filename = args[0];
+        // Display results
+        scanner.displayTokens(out);
+        scanner.displayStatistics(out);
+        scanner.getSymbolTable().display(out);
         
-        try {
-            // Read the source file
-            String sourceCode = readFile(filename);
-            
-            System.out.println("Scanning file: " + filename);
-            System.out.println("=".repeat(80));
-            
-            // Create scanner and process
-            ManualScanner scanner = new ManualScanner(sourceCode);
-            scanner.scan();
-            
-            // Display results
-            scanner.displayTokens();
-            scanner.displayStatistics();
-            scanner.getSymbolTable().display();
-            
-            // Display any errors found
-            scanner.getErrorHandler().displayErrors();
-            
-        } catch (IOException e) {
-            System.err.println("Error reading file: " + e.getMessage());
-        }
+        // Display any errors found
+        scanner.getErrorHandler().displayErrors(out);
+        return scanner;
     }
     
     /**
-     * Helper method to read entire file into string
+     * Main method for testing the scanner
      */
-    private static String readFile(String filename) throws IOException {
-        StringBuilder content = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append('\n');
+    public static void main(String[] args) {
+        boolean showMetrics = args.length == 2 && args[0].equals("-m");
+        if (args.length != 1 && !showMetrics) {
+            System.out.println("Usage: java ManualScanner [-m] <source-file>");
+            System.out.println("Example: java ManualScanner test1.lang");
+            System.out.println("  -m  also print scan metrics (throughput, time by token type)");
+            return;
+        }
+        
+        // One large buffer in front of stdout, flushed once at the end
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), 64 * 1024), false, System.out.charset());
+        try {
+            ManualScanner scanner = scanFile(args[args.length - 1], out);
+            if (showMetrics) {
+                scanner.getMetrics().display(out);
             }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+        } finally {
+            out.flush();
         }
-        return content.toString();
     }
 }
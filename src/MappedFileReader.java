@@ -0,0 +1,174 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * MappedFileReader.java
+ * Reader over a memory-mapped file, for scanning large .lang sources
+ *
+ * The lexical grammar is pure ASCII outside string/char literals and
+ * comments, so bytes below 0x80 are widened straight to chars with no
+ * charset decoder involved. Only bytes that start a multi-byte UTF-8
+ * sequence are decoded by hand; malformed input becomes U+FFFD. The file
+ * is mapped in windows so inputs larger than 2 GB work as well.
+ *
+ * Used by ManualScanner.main and JFlexScanner. ManualScanner pulls one
+ * buffer of chars at a time, so the mapped pages are streamed through
+ * once and never copied into a whole-file String.
+ */
+public class MappedFileReader extends Reader {
+    
+    private static final long WINDOW_SIZE = 64L << 20;  // 64 MB per mapping
+    private static final char REPLACEMENT = '\uFFFD';
+    
+    private final FileChannel channel;
+    private final long fileSize;
+    private long windowStart;       // file offset of the current window
+    private MappedByteBuffer window;
+    private int windowPosition;     // next byte in the current window
+    private int windowLimit;
+    private int pendingLowSurrogate = -1; // second half of a supplementary char
+    
+    public MappedFileReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowStart = 0;
+        this.windowLimit = 0;
+    }
+    
+    public MappedFileReader(String filename) throws IOException {
+        this(Paths.get(filename));
+    }
+    
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        
+        int count = 0;
+        if (pendingLowSurrogate >= 0) {
+            cbuf[off + count++] = (char) pendingLowSurrogate;
+            pendingLowSurrogate = -1;
+        }
+        
+        while (count < len) {
+            if (windowPosition == windowLimit && !mapNextWindow()) {
+                break;
+            }
+            
+            // ASCII fast path: widen bytes directly
+            int end = Math.min(windowLimit, windowPosition + (len - count));
+            int i = windowPosition;
+            while (i < end) {
+                byte b = window.get(i);
+                if (b < 0) {
+                    break;
+                }
+                cbuf[off + count++] = (char) b;
+                i++;
+            }
+            windowPosition = i;
+            
+            if (i < end) {
+                // Non-ASCII: decode one UTF-8 sequence
+                int codePoint = decodeUtf8();
+                if (Character.isBmpCodePoint(codePoint)) {
+                    cbuf[off + count++] = (char) codePoint;
+                } else {
+                    cbuf[off + count++] = Character.highSurrogate(codePoint);
+                    if (count < len) {
+                        cbuf[off + count++] = Character.lowSurrogate(codePoint);
+                    } else {
+                        pendingLowSurrogate = Character.lowSurrogate(codePoint);
+                    }
+                }
+            }
+        }
+        
+        return count == 0 ? -1 : count;
+    }
+    
+    /**
+     * Decode the multi-byte UTF-8 sequence starting at the current byte
+     */
+    private int decodeUtf8() throws IOException {
+        int lead = nextByte();
+        int extra;
+        int codePoint;
+        
+        if ((lead & 0xE0) == 0xC0) {
+            extra = 1;
+            codePoint = lead & 0x1F;
+        } else if ((lead & 0xF0) == 0xE0) {
+            extra = 2;
+            codePoint = lead & 0x0F;
+        } else if ((lead & 0xF8) == 0xF0) {
+            extra = 3;
+            codePoint = lead & 0x07;
+        } else {
+            return REPLACEMENT;     // stray continuation or invalid lead byte
+        }
+        
+        for (int i = 0; i < extra; i++) {
+            int next = peekByte();
+            if (next < 0 || (next & 0xC0) != 0x80) {
+                return REPLACEMENT; // truncated sequence, keep the next byte
+            }
+            nextByte();
+            codePoint = (codePoint << 6) | (next & 0x3F);
+        }
+        
+        // Reject overlong forms, surrogates and out of range values
+        if ((extra == 1 && codePoint < 0x80) ||
+            (extra == 2 && (codePoint < 0x800 || Character.isSurrogate((char) codePoint))) ||
+            (extra == 3 && (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT))) {
+            return REPLACEMENT;
+        }
+        return codePoint;
+    }
+    
+    private int nextByte() throws IOException {
+        if (windowPosition == windowLimit && !mapNextWindow()) {
+            return -1;
+        }
+        return window.get(windowPosition++) & 0xFF;
+    }
+    
+    private int peekByte() throws IOException {
+        if (windowPosition == windowLimit && !mapNextWindow()) {
+            return -1;
+        }
+        return window.get(windowPosition) & 0xFF;
+    }
+    
+    /**
+     * Map the window following the current one; false at end of file
+     */
+    private boolean mapNextWindow() throws IOException {
+        long nextStart = windowStart + windowLimit;
+        if (nextStart >= fileSize) {
+            return false;
+        }
+        long size = Math.min(WINDOW_SIZE, fileSize - nextStart);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, nextStart, size);
+        windowStart = nextStart;
+        windowPosition = 0;
+        windowLimit = (int) size;
+        return true;
+    }
+    
+    /**
+     * Size of the mapped file in bytes
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
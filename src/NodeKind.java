@@ -0,0 +1,37 @@
+/**
+ * NodeKind.java
+ * Kinds of syntax tree nodes built by the Parser
+ *
+ * Each kind lists its children in order, and the token a node of that
+ * kind refers to (see SyntaxTree.getToken).
+ */
+public enum NodeKind {
+    PROGRAM,            // FUNCTION* MAIN; no token
+    FUNCTION,           // PARAMETERS BLOCK; token: function name
+    PARAMETERS,         // PARAMETER*; token: "("
+    PARAMETER,          // no children; token: parameter name
+    MAIN,               // BLOCK; token: "start"
+    BLOCK,              // statements; token: first token of the block
+
+    // Statements
+    DECLARATION,        // initializer?; token: variable name
+    ARRAY_DECLARATION,  // LITERAL size, initializer?; token: variable name
+    ASSIGNMENT,         // target (NAME or INDEX), value (none for ++ and --); token: operator
+    INPUT,              // NAME; token: "input"
+    OUTPUT,             // expressions; token: "output"
+    CONDITIONAL,        // condition BLOCK (else BLOCK)?; token: "condition"
+    LOOP,               // condition BLOCK; token: "loop"
+    RETURN,             // value?; token: "return"
+    BREAK,              // token: "break"
+    CONTINUE,           // token: "continue"
+
+    // Expressions
+    BINARY,             // left right; token: operator
+    UNARY,              // operand; token: operator
+    CALL,               // arguments; token: function name (also a statement)
+    INDEX,              // index expression; token: array name
+    NAME,               // token: identifier
+    LITERAL,            // token: literal
+
+    ERROR               // placeholder where a syntax error was found; token: offending token
+}
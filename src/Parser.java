@@ -0,0 +1,1013 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Parser.java
+ * Recursive-descent parser for the syntactic grammar of
+ * docs/LanguageGrammar.txt section 2
+ *
+ * Tokens are pulled from a Lexer only as far as the parser needs to look
+ * ahead (two tokens at most), so lexing and parsing run interleaved in
+ * one pass. Every token read is kept in the tree's TokenBuffer and nodes
+ * refer to tokens by index; the tree itself is a SyntaxTree arena, so
+ * parse time and memory are linear in the input.
+ *
+ * Expressions are parsed by precedence climbing over the operator table
+ * of section 4 (see expression(int)) rather than one method per grammar
+ * level, so an operand costs two calls instead of nine. Assignment is the
+ * lowest, right-associative level and is only parsed at statement level.
+ * The scanner reads "-5" as one signed literal; after an operand (as in
+ * "A -5") such a literal is split into a binary operator and an unsigned
+ * literal.
+ *
+ * Functions and the main block can also be parsed in parallel, see
+ * parseParallel.
+ *
+ * Syntax errors are reported to the parser's ErrorHandler. After an
+ * error the rest of the statement is skipped: tokens are dropped up to
+ * the first statement start on a later line or the next block keyword
+ * (finish, else, start), and parsing goes on from there.
+ */
+public class Parser {
+
+    /**
+     * Deepest nesting of blocks and parenthesized or unary expressions
+     */
+    public static final int MAX_DEPTH = 256;
+
+    // Precedence levels of section 4, loosest first
+    private static final int ASSIGNMENT = 0;        // right-associative
+    private static final int OR = 1;
+    private static final int AND = 2;
+    private static final int EQUALITY = 3;
+    private static final int RELATIONAL = 4;
+    private static final int ADDITIVE = 5;
+    private static final int MULTIPLICATIVE = 6;
+    private static final int UNARY = 7;             // prefix, right-associative
+    private static final int EXPONENTIAL = 8;       // right-associative
+    private static final int NOT_AN_OPERATOR = -1;
+
+    // Smallest token range parseParallel gives to one task
+    private static final int MIN_PARALLEL_RANGE = 1 << 14;
+
+    private final Lexer lexer;      // null if all tokens were given
+    private final TokenBuffer input;    // tokens given, null if read from the lexer
+    private int inputNext;              // next token of input to read
+    private final int inputEnd;
+    private final TokenBuffer tokens;   // tokens read, signed literals split as needed
+    private final SyntaxTree tree;
+    private final ErrorHandler errorHandler = new ErrorHandler();
+
+    private int position;           // index of the current token
+    private boolean lexerDone;      // EOF (or the end of input) has been read
+    private int depth;
+    private boolean sawMain;
+
+    // Range parser of parseParallel: its last token is the next range's "start"
+    private boolean range;
+
+    // Panic mode: the statement being parsed has an error
+    private boolean recovering;
+    private int errorLine;
+
+    public Parser(Lexer lexer) {
+        this(lexer, null, 0, 0, new TokenBuffer());
+    }
+
+    /**
+     * Parser for tokens already scanned, ending with EOF (e.g. the token
+     * buffer of a ManualScanner after scan or scanParallel)
+     * The given buffer is left unchanged: tokens are copied, as they are
+     * read, into the tree's own token buffer, where splitting a signed
+     * literal only moves the few tokens looked ahead.
+     */
+    public Parser(TokenBuffer tokens) {
+        this(null, tokens, 0, tokens.size(), tokens.copyRange(0, 0));
+    }
+
+    private Parser(Lexer lexer, TokenBuffer input, int from, int to, TokenBuffer tokens) {
+        this.lexer = lexer;
+        this.input = input;
+        this.inputNext = from;
+        this.inputEnd = to;
+        this.tokens = tokens;
+        this.tree = new SyntaxTree(tokens);
+        errorHandler.setPhase("syntax");
+    }
+
+    /**
+     * Parse the whole program
+     * Program ::= FunctionDeclaration* MainBlock
+     */
+    public SyntaxTree parse() {
+        int program = tree.add(NodeKind.PROGRAM, SyntaxTree.NONE);
+        parseUnits(program);
+        return finishProgram(program);
+    }
+
+    /**
+     * Parallel version of parse(), using the common pool
+     */
+    public SyntaxTree parseParallel() {
+        return parseParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parallel version of parse()
+     *
+     * All tokens are read first. A "start" token is only ever consumed at
+     * top level, since every block also ends before one, so each "start"
+     * begins an independent unit: a function or the main block. One pass
+     * over the tokens finds them and groups consecutive units into ranges
+     * of similar size, noting whether a main block came before each range.
+     * The ranges are parsed on the pool, each by its own parser reading
+     * its tokens into its own buffer, and merged in order: tokens, tree
+     * nodes and errors. The result is identical to parse().
+     */
+    public SyntaxTree parseParallel(ForkJoinPool pool) {
+        if (position != 0 || tree.size() != 0) {
+            throw new IllegalStateException("parseParallel needs an unused parser");
+        }
+        TokenBuffer all = input;
+        if (all == null) {
+            while (!lexerDone) {
+                peek(tokens.size());
+            }
+            all = tokens;
+        }
+
+        // Range boundaries: token 0, then "start" tokens, then EOF
+        int eof = all.size() - 1;
+        int rangeSize = Math.max(MIN_PARALLEL_RANGE, eof / Math.max(pool.getParallelism() * 4, 1));
+        List<Integer> bounds = new ArrayList<>();
+        List<Boolean> mainBefore = new ArrayList<>();
+        bounds.add(0);
+        mainBefore.add(false);
+        boolean mainSeen = false;
+        for (int i = 0; i < eof; i++) {
+            if (keywordAt(all, i) == Keywords.START) {
+                if (i - bounds.get(bounds.size() - 1) >= rangeSize) {
+                    bounds.add(i);
+                    mainBefore.add(mainSeen);
+                }
+                mainSeen |= keywordAt(all, i + 1) != Keywords.FUNCTION;
+            }
+        }
+        bounds.add(eof);
+        int ranges = bounds.size() - 1;
+        if (ranges < 2) {
+            return parse();
+        }
+
+        // Parse all ranges concurrently; each one ends with the next range's first token
+        TokenBuffer given = all;
+        List<Callable<Parser>> parses = new ArrayList<>();
+        for (int i = 0; i < ranges; i++) {
+            int from = bounds.get(i);
+            int to = bounds.get(i + 1);
+            boolean before = mainBefore.get(i);
+            parses.add(() -> {
+                Parser part = new Parser(null, given, from, to + 1, given.copyRange(from, from));
+                part.range = true;
+                part.sawMain = before;
+                part.parseUnits(part.tree.add(NodeKind.PROGRAM, SyntaxTree.NONE));
+                return part;
+            });
+        }
+        List<Future<Parser>> parts = pool.invokeAll(parses);
+
+        // Merge in order, dropping the copies of the next range's first token
+        tokens.clear();
+        int program = tree.add(NodeKind.PROGRAM, SyntaxTree.NONE);
+        for (int i = 0; i < ranges; i++) {
+            Parser part = join(parts.get(i));
+            int tokenShift = tokens.size();
+            int count = part.tokens.size() - (i < ranges - 1 ? 1 : 0);
+            tokens.addAll(part.tokens, 0, count);
+            int nodeShift = tree.append(part.tree, 1, tokenShift);
+            for (int unit = part.tree.getFirstChild(0); unit != SyntaxTree.NONE;
+                 unit = part.tree.getNextSibling(unit)) {
+                tree.addChild(program, unit + nodeShift);
+            }
+            errorHandler.addAll(part.errorHandler);
+            sawMain |= part.sawMain;
+        }
+        position = tokens.size() - 1;
+        inputNext = inputEnd;
+        lexerDone = true;
+        return finishProgram(program);
+    }
+
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Parallel parse interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private SyntaxTree finishProgram(int program) {
+        if (!sawMain) {
+            recovering = false;
+            error(ErrorCode.MISSING_MAIN, position);
+        }
+        tree.setRoot(program);
+        return tree;
+    }
+
+    /**
+     * The functions and main blocks up to EOF (or the end of the range),
+     * skipping anything else found at top level
+     */
+    private void parseUnits(int program) {
+        while (type(0) != TokenType.EOF && !atRangeEnd()) {
+            recovering = false;
+            if (keyword(0) == Keywords.START) {
+                if (keyword(1) == Keywords.FUNCTION) {
+                    tree.addChild(program, function());
+                } else {
+                    if (sawMain) {
+                        error(ErrorCode.UNEXPECTED_TOKEN, position);
+                    }
+                    tree.addChild(program, mainBlock());
+                    sawMain = true;
+                }
+            } else {
+                // Skip to the next "start"
+                error(ErrorCode.UNEXPECTED_TOKEN, position);
+                do {
+                    advance();
+                } while (type(0) != TokenType.EOF && keyword(0) != Keywords.START);
+            }
+        }
+    }
+
+    public SyntaxTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Syntax errors found by parse() or parseParallel()
+     */
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+
+    /**
+     * Lexer tokens are read from, null if the tokens were given
+     */
+    public Lexer getLexer() {
+        return lexer;
+    }
+
+    // ==================== Program Structure ====================
+
+    /**
+     * FunctionDeclaration ::= "start" "function" IDENTIFIER "(" ParameterList? ")"
+     *                         StatementList "finish"
+     */
+    private int function() {
+        int start = advance();
+        advance();
+        int name = expect(TokenType.IDENTIFIER, ErrorCode.EXPECTED_IDENTIFIER);
+        int function = tree.add(NodeKind.FUNCTION, name);
+
+        int parameters = tree.add(NodeKind.PARAMETERS, position);
+        tree.addChild(function, parameters);
+        if (expectChar('(', ErrorCode.EXPECTED_OPEN_PAREN) != SyntaxTree.NONE
+                && !atChar(')')) {
+            do {
+                int parameter = expect(TokenType.IDENTIFIER, ErrorCode.EXPECTED_IDENTIFIER);
+                if (parameter == SyntaxTree.NONE) {
+                    break;
+                }
+                tree.addChild(parameters, tree.add(NodeKind.PARAMETER, parameter));
+            } while (acceptChar(','));
+        }
+        expectChar(')', ErrorCode.EXPECTED_CLOSE_PAREN);
+        synchronizeHeader();
+
+        tree.addChild(function, statementList());
+        expectFinish(start);
+        return function;
+    }
+
+    /**
+     * MainBlock ::= "start" StatementList "finish"
+     */
+    private int mainBlock() {
+        int start = advance();
+        int main = tree.add(NodeKind.MAIN, start);
+        tree.addChild(main, statementList());
+        expectFinish(start);
+        return main;
+    }
+
+    /**
+     * StatementList ::= Statement*
+     * Ends before "finish" or "else"; also before "start", which can only
+     * mean the block was not closed.
+     */
+    private int statementList() {
+        int block = tree.add(NodeKind.BLOCK, position);
+        if (!enter()) {
+            skipBlock();
+            return block;
+        }
+        while (!atBlockEnd()) {
+            int statement = statement();
+            if (statement != SyntaxTree.NONE) {
+                tree.addChild(block, statement);
+            }
+        }
+        depth--;
+        return block;
+    }
+
+    private boolean atBlockEnd() {
+        if (type(0) == TokenType.EOF) {
+            return true;
+        }
+        int keyword = keyword(0);
+        return keyword == Keywords.FINISH || keyword == Keywords.ELSE || keyword == Keywords.START;
+    }
+
+    /**
+     * Skip a block too deeply nested to parse, up to its own "finish", so
+     * the enclosing blocks are still closed by theirs
+     * Like atBlockEnd, stops at "start", which only begins a top-level unit,
+     * and at the end of input or of a parseParallel range.
+     */
+    private void skipBlock() {
+        int open = 0;
+        while (type(0) != TokenType.EOF && !atRangeEnd()) {
+            int keyword = keyword(0);
+            if (keyword == Keywords.START) {
+                return;
+            }
+            if (keyword == Keywords.CONDITION || keyword == Keywords.LOOP) {
+                open++;
+            } else if (keyword == Keywords.FINISH) {
+                if (open == 0) {
+                    return;
+                }
+                open--;
+            }
+            advance();
+        }
+    }
+
+    private void expectFinish(int opener) {
+        if (keyword(0) == Keywords.FINISH) {
+            advance();
+        } else {
+            recovering = false;
+            error(ErrorCode.MISSING_FINISH, opener);
+        }
+        recovering = false;
+    }
+
+    // ==================== Statements ====================
+
+    /**
+     * One statement; NONE if nothing usable was parsed
+     */
+    private int statement() {
+        recovering = false;
+        int statement;
+        if (type(0) == TokenType.IDENTIFIER) {
+            statement = assignmentOrCall();
+        } else {
+            switch (keyword(0)) {
+                case Keywords.DECLARE:
+                    statement = declaration();
+                    break;
+                case Keywords.INPUT:
+                    statement = input();
+                    break;
+                case Keywords.OUTPUT:
+                    statement = output();
+                    break;
+                case Keywords.CONDITION:
+                    statement = conditional();
+                    break;
+                case Keywords.LOOP:
+                    statement = loop();
+                    break;
+                case Keywords.RETURN:
+                    statement = returnStatement();
+                    break;
+                case Keywords.BREAK:
+                    statement = tree.add(NodeKind.BREAK, advance());
+                    break;
+                case Keywords.CONTINUE:
+                    statement = tree.add(NodeKind.CONTINUE, advance());
+                    break;
+                default:
+                    error(ErrorCode.EXPECTED_STATEMENT, position);
+                    statement = SyntaxTree.NONE;
+            }
+        }
+        if (recovering) {
+            synchronize();
+            recovering = false;
+        }
+        return statement;
+    }
+
+    /**
+     * DeclarationStmt ::= "declare" IDENTIFIER ("[" INTEGER_LITERAL "]")? ("=" Expression)?
+     */
+    private int declaration() {
+        advance();
+        int name = expect(TokenType.IDENTIFIER, ErrorCode.EXPECTED_IDENTIFIER);
+        if (name == SyntaxTree.NONE) {
+            return SyntaxTree.NONE;
+        }
+        int declaration;
+        if (acceptChar('[')) {
+            declaration = tree.add(NodeKind.ARRAY_DECLARATION, name);
+            int size = expect(TokenType.INTEGER_LITERAL, ErrorCode.EXPECTED_ARRAY_SIZE);
+            tree.addChild(declaration, tree.add(size == SyntaxTree.NONE ? NodeKind.ERROR : NodeKind.LITERAL,
+                                                size == SyntaxTree.NONE ? position : size));
+            expectChar(']', ErrorCode.EXPECTED_CLOSE_BRACKET);
+        } else {
+            declaration = tree.add(NodeKind.DECLARATION, name);
+        }
+        if (type(0) == TokenType.ASSIGNMENT_OP) {
+            if (length(0) != 1) {
+                error(ErrorCode.UNEXPECTED_TOKEN, position);
+            }
+            advance();
+            tree.addChild(declaration, expression());
+        }
+        return declaration;
+    }
+
+    /**
+     * AssignmentStmt ::= IDENTIFIER ("[" Expression "]")?
+     *                    (ASSIGNMENT_OP Expression | INCREMENT_OP | DECREMENT_OP)
+     * FunctionCallStmt ::= IDENTIFIER "(" ArgumentList? ")"
+     */
+    private int assignmentOrCall() {
+        if (atChar(1, '(')) {
+            return call(advance());
+        }
+        int statement = expression(ASSIGNMENT);
+        if (tree.getKind(statement) != NodeKind.ASSIGNMENT) {
+            error(ErrorCode.EXPECTED_ASSIGNMENT, position);
+            return SyntaxTree.NONE;
+        }
+        return statement;
+    }
+
+    /**
+     * InputStmt ::= "input" IDENTIFIER
+     */
+    private int input() {
+        int input = tree.add(NodeKind.INPUT, advance());
+        int name = expect(TokenType.IDENTIFIER, ErrorCode.EXPECTED_IDENTIFIER);
+        if (name != SyntaxTree.NONE) {
+            tree.addChild(input, tree.add(NodeKind.NAME, name));
+        }
+        return input;
+    }
+
+    /**
+     * OutputStmt ::= "output" Expression ("," Expression)*
+     */
+    private int output() {
+        int output = tree.add(NodeKind.OUTPUT, advance());
+        do {
+            tree.addChild(output, expression());
+        } while (acceptChar(','));
+        return output;
+    }
+
+    /**
+     * ConditionalStmt ::= "condition" "(" Expression ")" StatementList
+     *                     ("else" StatementList)? "finish"
+     */
+    private int conditional() {
+        int keyword = advance();
+        int conditional = tree.add(NodeKind.CONDITIONAL, keyword);
+        tree.addChild(conditional, parenthesized());
+        synchronizeHeader();
+        tree.addChild(conditional, statementList());
+        if (keyword(0) == Keywords.ELSE) {
+            advance();
+            tree.addChild(conditional, statementList());
+        }
+        expectFinish(keyword);
+        return conditional;
+    }
+
+    /**
+     * LoopStmt ::= "loop" "(" Expression ")" StatementList "finish"
+     */
+    private int loop() {
+        int keyword = advance();
+        int loop = tree.add(NodeKind.LOOP, keyword);
+        tree.addChild(loop, parenthesized());
+        synchronizeHeader();
+        tree.addChild(loop, statementList());
+        expectFinish(keyword);
+        return loop;
+    }
+
+    /**
+     * ReturnStmt ::= "return" Expression?
+     * Statements have no terminator, so the value must start on the
+     * same line as "return".
+     */
+    private int returnStatement() {
+        int keyword = advance();
+        int statement = tree.add(NodeKind.RETURN, keyword);
+        if (tokens.getLineNumber(peek(0)) == tokens.getLineNumber(keyword) && startsExpression()) {
+            tree.addChild(statement, expression());
+        }
+        return statement;
+    }
+
+    private int parenthesized() {
+        if (expectChar('(', ErrorCode.EXPECTED_OPEN_PAREN) == SyntaxTree.NONE) {
+            return tree.add(NodeKind.ERROR, position);
+        }
+        int condition = expression();
+        expectChar(')', ErrorCode.EXPECTED_CLOSE_PAREN);
+        return condition;
+    }
+
+    // ==================== Expressions ====================
+
+    /**
+     * Expression ::= LogicalOrExpr
+     */
+    private int expression() {
+        return expression(OR);
+    }
+
+    /**
+     * Precedence climbing: an operand followed by every operator that
+     * binds at least as tightly as minLevel
+     *
+     * Left-associative operators parse their right operand one level
+     * tighter, right-associative ones ("**", assignment) at their own
+     * level. A prefix operator takes an operand of level UNARY, so "**"
+     * binds tighter than unary minus: "-A ** B" is "-(A ** B)", and so is
+     * "-5 ** B" once its signed literal is split.
+     */
+    private int expression(int minLevel) {
+        if (atSignedLiteral() && tokens.getType(peek(1)) == TokenType.ARITHMETIC_OP
+                && tokens.getLength(peek(1)) == 2) {
+            tokens.split(position, 1, TokenType.ARITHMETIC_OP);
+        }
+        int left = isUnaryOperator() ? unary() : primary();
+        while (true) {
+            if (minLevel <= ADDITIVE) {
+                splitSignedLiteral();
+            }
+            int level = infixLevel();
+            if (level < minLevel) {
+                return left;
+            }
+            int operator = advance();
+            if (level == ASSIGNMENT) {
+                return assignment(operator, left);
+            }
+            if (level != EXPONENTIAL) {
+                left = tree.add(NodeKind.BINARY, operator, left, expression(level + 1));
+            } else if (enter()) {
+                left = tree.add(NodeKind.BINARY, operator, left, expression(EXPONENTIAL));
+                depth--;
+            } else {
+                return tree.add(NodeKind.ERROR, operator);
+            }
+        }
+    }
+
+    /**
+     * UnaryExpr ::= ("!" | "+" | "-")* PrimaryExpr
+     */
+    private int unary() {
+        int operator = advance();
+        if (!enter()) {
+            return tree.add(NodeKind.ERROR, operator);
+        }
+        int unary = tree.add(NodeKind.UNARY, operator);
+        tree.addChild(unary, expression(UNARY));
+        depth--;
+        return unary;
+    }
+
+    /**
+     * An assignment operator, "++" or "--" after target
+     * Assignments are right-associative, so "A = B = 0" assigns 0 to both.
+     */
+    private int assignment(int operator, int target) {
+        NodeKind kind = tree.getKind(target);
+        if (kind != NodeKind.NAME && kind != NodeKind.INDEX) {
+            error(ErrorCode.INVALID_ASSIGNMENT_TARGET, operator);
+        }
+        int assignment = tree.add(NodeKind.ASSIGNMENT, operator);
+        tree.addChild(assignment, target);
+        TokenType type = tokens.getType(operator);
+        if (type == TokenType.INCREMENT_OP || type == TokenType.DECREMENT_OP) {
+            return assignment;
+        }
+        if (enter()) {
+            tree.addChild(assignment, expression(ASSIGNMENT));
+            depth--;
+        }
+        return assignment;
+    }
+
+    /**
+     * PrimaryExpr ::= IDENTIFIER ("[" Expression "]")? | FunctionCall | literal
+     *               | "(" Expression ")"
+     */
+    private int primary() {
+        switch (type(0)) {
+            case IDENTIFIER: {
+                int name = advance();
+                if (atChar('(')) {
+                    return call(name);
+                }
+                return atChar('[') ? index(name) : tree.add(NodeKind.NAME, name);
+            }
+            case INTEGER_LITERAL:
+            case FLOAT_LITERAL:
+            case STRING_LITERAL:
+            case CHAR_LITERAL:
+            case BOOLEAN_LITERAL:
+                return tree.add(NodeKind.LITERAL, advance());
+            case PUNCTUATOR:
+                if (atChar('(')) {
+                    int open = advance();
+                    if (!enter()) {
+                        return tree.add(NodeKind.ERROR, open);
+                    }
+                    int inner = expression();
+                    depth--;
+                    expectChar(')', ErrorCode.EXPECTED_CLOSE_PAREN);
+                    return inner;
+                }
+                break;
+            default:
+                break;
+        }
+        error(ErrorCode.EXPECTED_EXPRESSION, position);
+        return tree.add(NodeKind.ERROR, position);
+    }
+
+    /**
+     * FunctionCall ::= IDENTIFIER "(" ArgumentList? ")"; at "("
+     */
+    private int call(int name) {
+        int call = tree.add(NodeKind.CALL, name);
+        int open = advance();
+        if (!enter()) {
+            return tree.add(NodeKind.ERROR, open);
+        }
+        if (!atChar(')')) {
+            do {
+                tree.addChild(call, expression());
+            } while (acceptChar(','));
+        }
+        depth--;
+        expectChar(')', ErrorCode.EXPECTED_CLOSE_PAREN);
+        return call;
+    }
+
+    /**
+     * IDENTIFIER "[" Expression "]"; at "["
+     */
+    private int index(int name) {
+        int index = tree.add(NodeKind.INDEX, name);
+        int open = advance();
+        if (!enter()) {
+            return tree.add(NodeKind.ERROR, open);
+        }
+        tree.addChild(index, expression());
+        depth--;
+        expectChar(']', ErrorCode.EXPECTED_CLOSE_BRACKET);
+        return index;
+    }
+
+    /**
+     * Precedence level of the current token as an infix or postfix
+     * operator, NOT_AN_OPERATOR if it is none
+     */
+    private int infixLevel() {
+        int index = peek(0);
+        CharSequence text;
+        switch (tokens.getType(index)) {
+            case LOGICAL_OP:
+                text = tokens.getText(index);
+                return text.length() == 1 ? NOT_AN_OPERATOR : (text.charAt(0) == '|' ? OR : AND);
+            case RELATIONAL_OP:
+                text = tokens.getText(index);
+                return text.length() == 2 && (text.charAt(0) == '=' || text.charAt(0) == '!')
+                       ? EQUALITY : RELATIONAL;
+            case ARITHMETIC_OP:
+                if (tokens.getLength(index) == 2) {
+                    return EXPONENTIAL;
+                }
+                char op = tokens.getText(index).charAt(0);
+                return op == '+' || op == '-' ? ADDITIVE : MULTIPLICATIVE;
+            case ASSIGNMENT_OP:
+            case INCREMENT_OP:
+            case DECREMENT_OP:
+                return ASSIGNMENT;
+            default:
+                return NOT_AN_OPERATOR;
+        }
+    }
+
+    private boolean isUnaryOperator() {
+        int index = peek(0);
+        TokenType type = tokens.getType(index);
+        if (type != TokenType.ARITHMETIC_OP && type != TokenType.LOGICAL_OP) {
+            return false;
+        }
+        CharSequence text = tokens.getText(index);
+        char op = text.charAt(0);
+        return text.length() == 1 && (op == '+' || op == '-' || op == '!');
+    }
+
+    /**
+     * True if the current token can begin an expression
+     */
+    private boolean startsExpression() {
+        switch (type(0)) {
+            case IDENTIFIER:
+            case INTEGER_LITERAL:
+            case FLOAT_LITERAL:
+            case STRING_LITERAL:
+            case CHAR_LITERAL:
+            case BOOLEAN_LITERAL:
+                return true;
+            default:
+                return atChar('(') || isUnaryOperator();
+        }
+    }
+
+    /**
+     * After an operand, a signed literal such as "-5" in "A -5" is a
+     * binary operator followed by a literal: split it in two
+     */
+    private void splitSignedLiteral() {
+        if (atSignedLiteral()) {
+            tokens.split(position, 1, TokenType.ARITHMETIC_OP);
+        }
+    }
+
+    /**
+     * True if the current token is a number with a sign, such as "-5"
+     */
+    private boolean atSignedLiteral() {
+        TokenType type = type(0);
+        if (type != TokenType.INTEGER_LITERAL && type != TokenType.FLOAT_LITERAL) {
+            return false;
+        }
+        char sign = tokens.getText(position).charAt(0);
+        return sign == '+' || sign == '-';
+    }
+
+    // ==================== Token Access ====================
+
+    /**
+     * Index of the token k places ahead, reading tokens from the lexer as
+     * needed; past the end this is the EOF token
+     */
+    private int peek(int k) {
+        while (position + k >= tokens.size() && !lexerDone) {
+            if (lexer == null) {
+                int to = Math.min(inputEnd, inputNext + position + k + 1 - tokens.size());
+                tokens.addAll(input, inputNext, to);
+                inputNext = to;
+                lexerDone = inputNext == inputEnd;
+            } else {
+                Token token = lexer.nextToken();
+                tokens.add(token);
+                lexerDone = token.getType() == TokenType.EOF;
+            }
+        }
+        return Math.min(position + k, tokens.size() - 1);
+    }
+
+    /**
+     * True if the current token is the last one of a parseParallel range,
+     * the next range's "start"
+     */
+    private boolean atRangeEnd() {
+        return range && peek(0) == tokens.size() - 1 && lexerDone;
+    }
+
+    private TokenType type(int k) {
+        return tokens.getType(peek(k));
+    }
+
+    private int length(int k) {
+        return tokens.getLength(peek(k));
+    }
+
+    /**
+     * Keyword ID (see Keywords) of the token k places ahead, NONE if it
+     * is not a keyword
+     */
+    private int keyword(int k) {
+        return keywordAt(tokens, peek(k));
+    }
+
+    private static int keywordAt(TokenBuffer buffer, int index) {
+        if (buffer.getType(index) != TokenType.KEYWORD) {
+            return Keywords.NONE;
+        }
+        return Keywords.lookup(buffer.getText(index));
+    }
+
+    private boolean atChar(char ch) {
+        return atChar(0, ch);
+    }
+
+    /**
+     * True if the token k places ahead is the single-character operator
+     * or punctuator ch
+     */
+    private boolean atChar(int k, char ch) {
+        int index = peek(k);
+        return tokens.getLength(index) == 1 && tokens.getType(index) != TokenType.EOF
+               && tokens.getText(index).charAt(0) == ch;
+    }
+
+    private boolean acceptChar(char ch) {
+        if (atChar(ch)) {
+            advance();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Consume the current token; returns its index
+     */
+    private int advance() {
+        int index = peek(0);
+        if (tokens.getType(index) != TokenType.EOF) {
+            position++;
+        }
+        return index;
+    }
+
+    /**
+     * Consume a token of the given type, or report code; returns its
+     * index or NONE
+     */
+    private int expect(TokenType type, ErrorCode code) {
+        if (type(0) == type) {
+            return advance();
+        }
+        error(code, position);
+        return SyntaxTree.NONE;
+    }
+
+    private int expectChar(char ch, ErrorCode code) {
+        if (atChar(ch)) {
+            return advance();
+        }
+        error(code, position);
+        return SyntaxTree.NONE;
+    }
+
+    private boolean enter() {
+        if (depth >= MAX_DEPTH) {
+            error(ErrorCode.NESTING_TOO_DEEP, position);
+            return false;
+        }
+        depth++;
+        return true;
+    }
+
+    // ==================== Error Recovery ====================
+
+    /**
+     * Report an error at token, unless the current statement already has one
+     */
+    private void error(ErrorCode code, int token) {
+        int index = Math.min(token, peek(0));
+        if (!recovering) {
+            errorHandler.report(code, tokens.getOffset(index), tokens.getLineNumber(index),
+                                tokens.getColumnNumber(index), tokens.getText(index));
+            errorLine = tokens.getLineNumber(index);
+        }
+        recovering = true;
+    }
+
+    /**
+     * Skip the rest of a statement with an error: stop at a block keyword
+     * or at a statement start on a later line
+     */
+    private void synchronize() {
+        while (!atBlockEnd()) {
+            if (tokens.getLineNumber(peek(0)) > errorLine && startsStatement()) {
+                return;
+            }
+            advance();
+        }
+    }
+
+    /**
+     * After a function, condition or loop header with an error, skip the
+     * rest of the header line so the body can still be parsed
+     */
+    private void synchronizeHeader() {
+        if (recovering) {
+            while (!atBlockEnd() && tokens.getLineNumber(peek(0)) <= errorLine) {
+                advance();
+            }
+            recovering = false;
+        }
+    }
+
+    private boolean startsStatement() {
+        if (type(0) == TokenType.IDENTIFIER) {
+            return true;
+        }
+        int keyword = keyword(0);
+        return keyword != Keywords.NONE && keyword != Keywords.TRUE && keyword != Keywords.FALSE
+               && keyword != Keywords.FUNCTION;
+    }
+
+    // ==================== Main Method ====================
+
+    /**
+     * Parse a file and report its lexical and syntax errors; -t also
+     * prints the syntax tree, -p scans and parses in parallel
+     */
+    public static void main(String[] args) {
+        boolean showTree = false;
+        boolean parallel = false;
+        int argIndex = 0;
+        for (; argIndex < args.length - 1; argIndex++) {
+            if (args[argIndex].equals("-t")) {
+                showTree = true;
+            } else if (args[argIndex].equals("-p")) {
+                parallel = true;
+            } else {
+                break;
+            }
+        }
+        if (argIndex != args.length - 1) {
+            System.out.println("Usage: java Parser [-t] [-p] <source-file>");
+            System.out.println("Example: java Parser -t test1.lang");
+            return;
+        }
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), 64 * 1024), false, System.out.charset());
+        String filename = args[argIndex];
+        try (Reader reader = new MappedFileReader(filename)) {
+            out.println("Parsing file: " + filename);
+            long start = System.nanoTime();
+            Lexer lexer;
+            Parser parser;
+            SyntaxTree tree;
+            if (parallel) {
+                StringWriter source = new StringWriter();
+                reader.transferTo(source);
+                ManualScanner scanner = new ManualScanner(source.toString());
+                scanner.scanParallel();
+                lexer = scanner;
+                parser = new Parser(scanner.getTokenBuffer());
+                tree = parser.parseParallel();
+            } else {
+                lexer = new ManualScanner(reader);
+                parser = new Parser(lexer);
+                tree = parser.parse();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            if (showTree) {
+                tree.display(out);
+            }
+            lexer.getErrorHandler().displayErrors(out);
+            parser.getErrorHandler().displayErrors(out);
+            out.printf("Parsed %d tokens into %d nodes in %.1f ms%n",
+                       tree.getTokens().size(), tree.size(), elapsed / 1e6);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+        } finally {
+            out.flush();
+        }
+    }
+}
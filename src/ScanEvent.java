@@ -0,0 +1,35 @@
+import jdk.jfr.*;
+
+/**
+ * ScanEvent.java
+ * JDK Flight Recorder event for one finished scan (see ScanMetrics)
+ *
+ * The event's duration is the scan time, so hot files show up in a
+ * recording sorted by duration.
+ */
+@Name("simplelang.Scan")
+@Label("Scan")
+@Category({ "SimpleLang", "Scanner" })
+@Description("A source file or text scanned into tokens")
+@StackTrace(false)
+public class ScanEvent extends Event {
+
+    @Label("Source")
+    String source;
+
+    @Label("Characters")
+    long chars;
+
+    @Label("Tokens")
+    long tokens;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Lexical Errors")
+    long errors;
+
+    @Label("Bytes Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
@@ -0,0 +1,349 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * ScanMetrics.java
+ * Throughput, allocation and per-token-type timing of a scan
+ *
+ * Attach one to a scanner with ManualScanner.setMetrics before scan(), or
+ * pass one to JFlexScanner.scan to measure Yylex the same way.
+ * Timing every token would cost more than lexing many of them, so only
+ * every SAMPLE_INTERVAL-th token is timed (including the whitespace and
+ * comments skipped before it); the time spent on a token type is
+ * estimated as its mean sampled time times its token count. Bytes
+ * allocated are read from the JVM's per-thread counter and are -1 where
+ * unknown (scanParallel, virtual threads, or a JVM without the counter).
+ *
+ * Metrics of several scans can be added up (see add), exported as JSON,
+ * and every finished scan is also emitted as JDK Flight Recorder events:
+ * one ScanEvent per scan and one TokenCategoryEvent per token type seen.
+ */
+public class ScanMetrics {
+
+    static final int SAMPLE_INTERVAL = 16;
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final String source;            // file name, null if none
+    private long chars;
+    private long tokens;
+    private long lines;
+    private long comments;
+    private long errors;
+    private long nanos;
+    private long allocatedBytes = -1;
+    private int scans;
+    private final long[] typeCounts = new long[TYPES.length];
+    private final long[] sampledNanos = new long[TYPES.length];
+    private final long[] samples = new long[TYPES.length];
+
+    // State of the scan in progress
+    private long startNanos;
+    private long startAllocated = -1;
+    private final long[] pendingNanos = new long[TYPES.length];
+    private final long[] pendingSamples = new long[TYPES.length];
+    private ScanEvent event;
+
+    public ScanMetrics() {
+        this(null);
+    }
+
+    /**
+     * Metrics of a scan of the named source (shown in JSON and JFR events)
+     */
+    public ScanMetrics(String source) {
+        this.source = source;
+    }
+
+    // ==================== Recording ====================
+
+    /**
+     * A scan starts; measureAllocation only if it runs on this thread
+     */
+    void begin(boolean measureAllocation) {
+        startAllocated = measureAllocation ? allocatedByThisThread() : -1;
+        event = new ScanEvent();
+        event.begin();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * One timed token
+     */
+    void sample(TokenType type, long elapsed) {
+        pendingNanos[type.ordinal()] += elapsed;
+        pendingSamples[type.ordinal()]++;
+    }
+
+    /**
+     * The scan ended; counts are the token counts per TokenType ordinal
+     */
+    void end(long chars, int lines, int comments, int errors, int[] counts) {
+        long elapsed = System.nanoTime() - startNanos;
+        ScanMetrics scan = new ScanMetrics(source);
+        scan.chars = chars;
+        scan.lines = lines;
+        scan.comments = comments;
+        scan.errors = errors;
+        scan.nanos = elapsed;
+        scan.allocatedBytes = startAllocated < 0 ? -1 : allocatedByThisThread() - startAllocated;
+        scan.scans = 1;
+        for (int i = 0; i < counts.length; i++) {
+            scan.typeCounts[i] = counts[i];
+            scan.tokens += counts[i];
+        }
+        System.arraycopy(pendingNanos, 0, scan.sampledNanos, 0, TYPES.length);
+        System.arraycopy(pendingSamples, 0, scan.samples, 0, TYPES.length);
+        Arrays.fill(pendingNanos, 0);
+        Arrays.fill(pendingSamples, 0);
+        add(scan);
+
+        commitEvents(scan);
+        event = null;
+    }
+
+    private void commitEvents(ScanMetrics scan) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.chars = scan.chars;
+            event.tokens = scan.tokens;
+            event.lines = scan.lines;
+            event.errors = scan.errors;
+            event.allocatedBytes = scan.allocatedBytes;
+            event.commit();
+        }
+        for (TokenType type : TYPES) {
+            if (scan.typeCounts[type.ordinal()] == 0) {
+                continue;
+            }
+            TokenCategoryEvent category = new TokenCategoryEvent();
+            if (!category.isEnabled()) {
+                return;
+            }
+            category.source = source;
+            category.tokenType = type.name();
+            category.count = scan.getCount(type);
+            category.nanosPerToken = scan.getNanosPerToken(type);
+            category.estimatedNanos = scan.getEstimatedNanos(type);
+            category.commit();
+        }
+    }
+
+    private static long allocatedByThisThread() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean counters
+                && counters.isThreadAllocatedMemorySupported()
+                && counters.isThreadAllocatedMemoryEnabled()) {
+            return counters.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * Add the metrics of another scan to these, e.g. for batch totals
+     * Bytes allocated stay known only while known for every scan.
+     */
+    public synchronized void add(ScanMetrics other) {
+        if (scans == 0) {
+            allocatedBytes = other.allocatedBytes;
+        } else if (allocatedBytes >= 0) {
+            allocatedBytes = other.allocatedBytes < 0 ? -1 : allocatedBytes + other.allocatedBytes;
+        }
+        chars += other.chars;
+        tokens += other.tokens;
+        lines += other.lines;
+        comments += other.comments;
+        errors += other.errors;
+        nanos += other.nanos;
+        scans += other.scans;
+        for (int i = 0; i < TYPES.length; i++) {
+            typeCounts[i] += other.typeCounts[i];
+            sampledNanos[i] += other.sampledNanos[i];
+            samples[i] += other.samples[i];
+        }
+    }
+
+    // ==================== Results ====================
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getCharCount() {
+        return chars;
+    }
+
+    public long getTokenCount() {
+        return tokens;
+    }
+
+    public long getLineCount() {
+        return lines;
+    }
+
+    public long getCommentCount() {
+        return comments;
+    }
+
+    public long getErrorCount() {
+        return errors;
+    }
+
+    /**
+     * Time spent scanning, summed over all scans added
+     */
+    public long getElapsedNanos() {
+        return nanos;
+    }
+
+    /**
+     * Bytes allocated while scanning, -1 if unknown
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public int getScanCount() {
+        return scans;
+    }
+
+    public double getCharsPerSecond() {
+        return perSecond(chars);
+    }
+
+    public double getTokensPerSecond() {
+        return perSecond(tokens);
+    }
+
+    private double perSecond(long count) {
+        return nanos == 0 ? 0 : count * 1e9 / nanos;
+    }
+
+    /**
+     * Lexical errors per 1000 tokens
+     */
+    public double getErrorRate() {
+        return tokens == 0 ? 0 : errors * 1000.0 / tokens;
+    }
+
+    public long getCount(TokenType type) {
+        return typeCounts[type.ordinal()];
+    }
+
+    /**
+     * Mean time to lex one token of type, from the samples; 0 if none
+     */
+    public double getNanosPerToken(TokenType type) {
+        int i = type.ordinal();
+        return samples[i] == 0 ? 0 : (double) sampledNanos[i] / samples[i];
+    }
+
+    /**
+     * Estimated total time spent lexing tokens of type
+     */
+    public long getEstimatedNanos(TokenType type) {
+        return Math.round(getNanosPerToken(type) * typeCounts[type.ordinal()]);
+    }
+
+    // ==================== Output ====================
+
+    /**
+     * Print the metrics as a short report
+     */
+    public void display(PrintStream out) {
+        out.println("\n" + "=".repeat(80));
+        out.println("SCAN METRICS");
+        out.println("=".repeat(80));
+        out.printf("Elapsed: %.3f ms%n", nanos / 1e6);
+        out.printf("Throughput: %.0f chars/s, %.0f tokens/s%n",
+                   getCharsPerSecond(), getTokensPerSecond());
+        out.println("Bytes allocated: " + (allocatedBytes < 0 ? "unknown" : allocatedBytes));
+        out.printf("Error rate: %.2f per 1000 tokens%n", getErrorRate());
+        out.println("\nTime by token type (sampled 1 in " + SAMPLE_INTERVAL + "):");
+        out.println("-".repeat(50));
+        for (TokenType type : TYPES) {
+            if (typeCounts[type.ordinal()] > 0) {
+                out.printf("  %-25s: %8.1f ns/token, %8.3f ms%n", type,
+                           getNanosPerToken(type), getEstimatedNanos(type) / 1e6);
+            }
+        }
+        out.println("=".repeat(80) + "\n");
+    }
+
+    /**
+     * The metrics as one JSON object
+     */
+    public String toJson() {
+        return appendJson(new StringBuilder()).toString();
+    }
+
+    public synchronized StringBuilder appendJson(StringBuilder sb) {
+        sb.append('{');
+        if (source != null) {
+            sb.append("\"source\":");
+            appendJsonString(sb, source);
+            sb.append(',');
+        }
+        sb.append("\"scans\":").append(scans)
+          .append(",\"chars\":").append(chars)
+          .append(",\"tokens\":").append(tokens)
+          .append(",\"lines\":").append(lines)
+          .append(",\"comments\":").append(comments)
+          .append(",\"errors\":").append(errors)
+          .append(",\"elapsedNanos\":").append(nanos)
+          .append(",\"charsPerSecond\":").append(Math.round(getCharsPerSecond()))
+          .append(",\"tokensPerSecond\":").append(Math.round(getTokensPerSecond()))
+          .append(",\"allocatedBytes\":").append(allocatedBytes)
+          .append(",\"errorsPer1000Tokens\":").append(Math.round(getErrorRate() * 1000) / 1000.0)
+          .append(",\"tokenTypes\":{");
+        boolean first = true;
+        for (TokenType type : TYPES) {
+            if (typeCounts[type.ordinal()] == 0) {
+                continue;
+            }
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append('"').append(type.name()).append("\":{\"count\":")
+              .append(typeCounts[type.ordinal()])
+              .append(",\"nanosPerToken\":").append(Math.round(getNanosPerToken(type) * 10) / 10.0)
+              .append(",\"estimatedNanos\":").append(getEstimatedNanos(type)).append('}');
+        }
+        return sb.append("}}");
+    }
+
+    static void appendJsonString(StringBuilder sb, String text) {
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            switch (ch) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
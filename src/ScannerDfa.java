@@ -0,0 +1,289 @@
+import java.util.*;
+
+/**
+ * ScannerDfa.java
+ * Precomputed character-class and state-transition tables for ManualScanner
+ *
+ * Every ASCII character maps to a character class, and each DFA state has
+ * one row of transitions indexed by class, so recognizing a token costs one
+ * table lookup per character and no allocation. Accepting states map to a
+ * TokenType. Tokens that need error recovery or have unbounded special
+ * content (comments, strings, characters, lowercase words, invalid chars)
+ * are not run through the transition table; the start row sends them to
+ * an action handled by the scanner instead.
+ *
+ * The tables are generated in the static initializer from the pattern
+ * matching priority rules in docs/LanguageGrammar.txt section 5:
+ * multi-character operators win over single-character ones (longest
+ * match), a sign directly followed by a digit starts a number, and a
+ * digit run followed by '.' is a floating-point literal.
+ */
+public final class ScannerDfa {
+
+    // ==================== Character Classes ====================
+
+    public static final int C_OTHER = 0;       // not in the alphabet
+    public static final int C_WHITESPACE = 1;  // space, \t, \r, \n
+    public static final int C_UPPER = 2;       // A-Z except E
+    public static final int C_UPPER_E = 3;     // E
+    public static final int C_LOWER = 4;       // a-z except e
+    public static final int C_LOWER_E = 5;     // e
+    public static final int C_DIGIT = 6;
+    public static final int C_UNDERSCORE = 7;
+    public static final int C_PLUS = 8;
+    public static final int C_MINUS = 9;
+    public static final int C_STAR = 10;
+    public static final int C_SLASH = 11;
+    public static final int C_PERCENT = 12;
+    public static final int C_EQUALS = 13;
+    public static final int C_LESS = 14;
+    public static final int C_GREATER = 15;
+    public static final int C_BANG = 16;
+    public static final int C_AMPERSAND = 17;
+    public static final int C_PIPE = 18;
+    public static final int C_PUNCTUATOR = 19; // ( ) { } [ ] , ; :
+    public static final int C_DOT = 20;
+    public static final int C_HASH = 21;
+    public static final int C_DOUBLE_QUOTE = 22;
+    public static final int C_SINGLE_QUOTE = 23;
+
+    public static final int CLASS_COUNT = 24;
+
+    private static final byte[] CHAR_CLASS = new byte[128];
+
+    // ==================== Start Actions ====================
+
+    // Negative entries of the start row: handled by the scanner, not the table
+    public static final int ACTION_INVALID = -1;
+    public static final int ACTION_HASH = -2;      // comment or invalid '#'
+    public static final int ACTION_WORD = -3;      // keyword, boolean or invalid
+    public static final int ACTION_STRING = -4;
+    public static final int ACTION_CHAR = -5;
+
+    // ==================== Float Flags ====================
+
+    public static final int FRACTION_MISSING = 1;  // "5." - no digit after '.'
+    public static final int FRACTION_TOO_LONG = 2; // more than 6 decimal digits
+    public static final int EXPONENT = 4;          // token has an exponent part
+    public static final int EXPONENT_MISSING = 8;  // 'e' or 'e+' without digits
+
+    // ==================== States ====================
+
+    private static int stateCount = 0;
+    private static final List<TokenType> acceptList = new ArrayList<>();
+    private static final List<Integer> flagList = new ArrayList<>();
+
+    private static final int[] START = new int[CLASS_COUNT];
+    private static int[] transitions;
+    private static TokenType[] accept;
+    private static byte[] flags;
+
+    static {
+        // Character classes
+        Arrays.fill(CHAR_CLASS, (byte) C_OTHER);
+        setClass(" \t\r\n", C_WHITESPACE);
+        for (char c = 'A'; c <= 'Z'; c++) CHAR_CLASS[c] = C_UPPER;
+        for (char c = 'a'; c <= 'z'; c++) CHAR_CLASS[c] = C_LOWER;
+        for (char c = '0'; c <= '9'; c++) CHAR_CLASS[c] = C_DIGIT;
+        setClass("E", C_UPPER_E);
+        setClass("e", C_LOWER_E);
+        setClass("_", C_UNDERSCORE);
+        setClass("+", C_PLUS);
+        setClass("-", C_MINUS);
+        setClass("*", C_STAR);
+        setClass("/", C_SLASH);
+        setClass("%", C_PERCENT);
+        setClass("=", C_EQUALS);
+        setClass("<", C_LESS);
+        setClass(">", C_GREATER);
+        setClass("!", C_BANG);
+        setClass("&", C_AMPERSAND);
+        setClass("|", C_PIPE);
+        setClass("(){}[],;:", C_PUNCTUATOR);
+        setClass(".", C_DOT);
+        setClass("#", C_HASH);
+        setClass("\"", C_DOUBLE_QUOTE);
+        setClass("'", C_SINGLE_QUOTE);
+
+        // States
+        int whitespace = state(TokenType.WHITESPACE, 0);
+        int identifier = state(TokenType.IDENTIFIER, 0);
+        int integer = state(TokenType.INTEGER_LITERAL, 0);
+
+        int plus = state(TokenType.ARITHMETIC_OP, 0);
+        int minus = state(TokenType.ARITHMETIC_OP, 0);
+        int star = state(TokenType.ARITHMETIC_OP, 0);
+        int slash = state(TokenType.ARITHMETIC_OP, 0);
+        int percent = state(TokenType.ARITHMETIC_OP, 0);
+        int power = state(TokenType.ARITHMETIC_OP, 0);
+        int equals = state(TokenType.ASSIGNMENT_OP, 0);
+        int compoundAssign = state(TokenType.ASSIGNMENT_OP, 0);
+        int less = state(TokenType.RELATIONAL_OP, 0);
+        int greater = state(TokenType.RELATIONAL_OP, 0);
+        int relational2 = state(TokenType.RELATIONAL_OP, 0);
+        int bang = state(TokenType.LOGICAL_OP, 0);
+        int logical2 = state(TokenType.LOGICAL_OP, 0);
+        int ampersand = state(TokenType.ERROR, 0);  // lone '&' is not an operator
+        int pipe = state(TokenType.ERROR, 0);       // lone '|' is not an operator
+        int increment = state(TokenType.INCREMENT_OP, 0);
+        int decrement = state(TokenType.DECREMENT_OP, 0);
+        int punctuator = state(TokenType.PUNCTUATOR, 0);
+
+        // Fraction digits are counted by state: 0, 1..6, 7 or more
+        int dot = state(TokenType.FLOAT_LITERAL, FRACTION_MISSING);
+        int[] fraction = new int[6];
+        for (int i = 0; i < fraction.length; i++) {
+            fraction[i] = state(TokenType.FLOAT_LITERAL, 0);
+        }
+        int fractionLong = state(TokenType.FLOAT_LITERAL, FRACTION_TOO_LONG);
+
+        // Exponent states, one set per fraction outcome
+        int[] fractionEnds = { dot, fraction[0], fractionLong };
+        int[] exponentStart = new int[3];
+        int[] exponentSign = new int[3];
+        int[] exponentDigits = new int[3];
+        for (int i = 0; i < 3; i++) {
+            int fractionFlag = flagList.get(fractionEnds[i]);
+            exponentStart[i] = state(TokenType.FLOAT_LITERAL,
+                                     fractionFlag | EXPONENT | EXPONENT_MISSING);
+            exponentSign[i] = state(TokenType.FLOAT_LITERAL,
+                                    fractionFlag | EXPONENT | EXPONENT_MISSING);
+            exponentDigits[i] = state(TokenType.FLOAT_LITERAL, fractionFlag | EXPONENT);
+        }
+
+        transitions = new int[stateCount * CLASS_COUNT];
+        Arrays.fill(transitions, -1);
+        accept = acceptList.toArray(new TokenType[0]);
+        flags = new byte[stateCount];
+        for (int i = 0; i < stateCount; i++) {
+            flags[i] = (byte) (int) flagList.get(i);
+        }
+
+        // Start row, in pattern matching priority order
+        Arrays.fill(START, ACTION_INVALID);
+        START[C_HASH] = ACTION_HASH;                  // 1-2. comments
+        START[C_LOWER] = ACTION_WORD;                 // 4-5. keywords, booleans
+        START[C_LOWER_E] = ACTION_WORD;
+        START[C_UPPER] = identifier;                  // 6. identifiers
+        START[C_UPPER_E] = identifier;
+        START[C_DIGIT] = integer;                     // 7-8. numbers
+        START[C_DOUBLE_QUOTE] = ACTION_STRING;        // 9. strings
+        START[C_SINGLE_QUOTE] = ACTION_CHAR;          // 10. characters
+        START[C_PLUS] = plus;                         // 3, 11. operators
+        START[C_MINUS] = minus;
+        START[C_STAR] = star;
+        START[C_SLASH] = slash;
+        START[C_PERCENT] = percent;
+        START[C_EQUALS] = equals;
+        START[C_LESS] = less;
+        START[C_GREATER] = greater;
+        START[C_BANG] = bang;
+        START[C_AMPERSAND] = ampersand;
+        START[C_PIPE] = pipe;
+        START[C_PUNCTUATOR] = punctuator;             // 12. punctuators
+        START[C_WHITESPACE] = whitespace;             // 13. whitespace
+
+        // Whitespace and identifiers
+        on(whitespace, whitespace, C_WHITESPACE);
+        on(identifier, identifier, C_LOWER, C_LOWER_E, C_DIGIT, C_UNDERSCORE);
+
+        // Multi-character operators
+        on(plus, increment, C_PLUS);
+        on(minus, decrement, C_MINUS);
+        on(star, power, C_STAR);
+        on(plus, compoundAssign, C_EQUALS);
+        on(minus, compoundAssign, C_EQUALS);
+        on(star, compoundAssign, C_EQUALS);
+        on(slash, compoundAssign, C_EQUALS);
+        on(equals, relational2, C_EQUALS);
+        on(bang, relational2, C_EQUALS);
+        on(less, relational2, C_EQUALS);
+        on(greater, relational2, C_EQUALS);
+        on(ampersand, logical2, C_AMPERSAND);
+        on(pipe, logical2, C_PIPE);
+
+        // Numbers: optional sign, digits, then '.' makes it a float
+        on(plus, integer, C_DIGIT);
+        on(minus, integer, C_DIGIT);
+        on(integer, integer, C_DIGIT);
+        on(integer, dot, C_DOT);
+        on(dot, fraction[0], C_DIGIT);
+        for (int i = 0; i + 1 < fraction.length; i++) {
+            on(fraction[i], fraction[i + 1], C_DIGIT);
+        }
+        on(fraction[fraction.length - 1], fractionLong, C_DIGIT);
+        on(fractionLong, fractionLong, C_DIGIT);
+
+        // Exponent: [eE][+-]?[0-9]+
+        for (int i = 0; i < 3; i++) {
+            on(exponentStart[i], exponentSign[i], C_PLUS, C_MINUS);
+            on(exponentStart[i], exponentDigits[i], C_DIGIT);
+            on(exponentSign[i], exponentDigits[i], C_DIGIT);
+            on(exponentDigits[i], exponentDigits[i], C_DIGIT);
+        }
+        on(dot, exponentStart[0], C_LOWER_E, C_UPPER_E);
+        for (int i = 0; i < fraction.length; i++) {
+            on(fraction[i], exponentStart[1], C_LOWER_E, C_UPPER_E);
+        }
+        on(fractionLong, exponentStart[2], C_LOWER_E, C_UPPER_E);
+    }
+
+    private ScannerDfa() {
+    }
+
+    private static void setClass(String chars, int cls) {
+        for (int i = 0; i < chars.length(); i++) {
+            CHAR_CLASS[chars.charAt(i)] = (byte) cls;
+        }
+    }
+
+    private static int state(TokenType type, int stateFlags) {
+        acceptList.add(type);
+        flagList.add(stateFlags);
+        return stateCount++;
+    }
+
+    private static void on(int from, int to, int... classes) {
+        for (int cls : classes) {
+            transitions[from * CLASS_COUNT + cls] = to;
+        }
+    }
+
+    // ==================== Lookups ====================
+
+    /**
+     * Character class of ch; everything outside ASCII is C_OTHER
+     */
+    public static int classOf(char ch) {
+        return ch < 128 ? CHAR_CLASS[ch] : C_OTHER;
+    }
+
+    /**
+     * State entered on the first character of a token, or a negative
+     * ACTION_ code when the scanner handles the token itself
+     */
+    public static int start(char ch) {
+        return START[classOf(ch)];
+    }
+
+    /**
+     * Next state from state on ch, or -1 when the token ends before ch
+     */
+    public static int next(int state, char ch) {
+        return transitions[state * CLASS_COUNT + classOf(ch)];
+    }
+
+    /**
+     * Token type recognized when the DFA stops in state
+     */
+    public static TokenType accept(int state) {
+        return accept[state];
+    }
+
+    /**
+     * Float error flags of state, 0 for everything else
+     */
+    public static int flags(int state) {
+        return flags[state];
+    }
+}
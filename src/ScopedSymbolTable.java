@@ -0,0 +1,225 @@
+import java.util.Arrays;
+
+/**
+ * ScopedSymbolTable.java
+ * Declarations visible at each point of a program, for semantic analysis
+ *
+ * Names are the dense IDs of a SymbolTable (the symbol IDs tokens carry),
+ * so finding the declaration a name refers to is one array read instead
+ * of a hash lookup: innermost[id] is the newest visible binding of that
+ * name. Bindings are kept on one stack of parallel arrays (symbol, kind,
+ * type, declaring node, scope depth), and each binding remembers the one
+ * it shadows. Entering a scope only records the stack height; leaving it
+ * pops the bindings declared since and restores the ones they shadowed,
+ * so nothing is copied or rebuilt and a scope costs time in proportion
+ * to the names declared in it.
+ *
+ * A binding ID is valid until the scope it was declared in is left.
+ */
+public class ScopedSymbolTable {
+
+    public static final int NONE = -1;
+
+    private static final SymbolKind[] KINDS = SymbolKind.values();
+    private static final ValueType[] TYPES = ValueType.values();
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final SymbolTable symbols;
+
+    // Innermost visible binding of each symbol ID, NONE if none
+    private int[] innermost;
+
+    // Binding stack, one slot per binding
+    private int[] symbolIds;
+    private byte[] kinds;
+    private byte[] types;
+    private int[] declarations;     // declaring node, NONE if none
+    private int[] depths;           // scope depth the binding belongs to
+    private int[] shadowed;         // binding hidden by this one, NONE if none
+    private int size;
+
+    // Scope stack: binding stack height when each open scope was entered
+    private int[] marks = new int[16];
+    private int depth;
+
+    /**
+     * Empty table for the names of symbols, with the global scope open
+     */
+    public ScopedSymbolTable(SymbolTable symbols) {
+        this.symbols = symbols;
+        innermost = new int[Math.max(symbols.getSize(), DEFAULT_CAPACITY)];
+        Arrays.fill(innermost, NONE);
+        symbolIds = new int[DEFAULT_CAPACITY];
+        kinds = new byte[DEFAULT_CAPACITY];
+        types = new byte[DEFAULT_CAPACITY];
+        declarations = new int[DEFAULT_CAPACITY];
+        depths = new int[DEFAULT_CAPACITY];
+        shadowed = new int[DEFAULT_CAPACITY];
+    }
+
+    // ==================== Scopes ====================
+
+    /**
+     * Open a nested scope, e.g. for a block or a function body
+     */
+    public void enterScope() {
+        if (depth + 1 == marks.length) {
+            marks = Arrays.copyOf(marks, marks.length * 2);
+        }
+        marks[++depth] = size;
+    }
+
+    /**
+     * Close the innermost scope, dropping everything declared in it
+     */
+    public void exitScope() {
+        if (depth == 0) {
+            throw new IllegalStateException("The global scope cannot be left");
+        }
+        rollback(marks[depth--]);
+    }
+
+    /**
+     * Number of scopes open inside the global scope
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Current height of the binding stack, to roll back to later
+     */
+    public int mark() {
+        return size;
+    }
+
+    /**
+     * Drop the bindings made since mark, newest first, making visible
+     * again the bindings they shadowed
+     */
+    public void rollback(int mark) {
+        if (mark < marks[depth] || mark > size) {
+            throw new IllegalArgumentException("Mark " + mark + " is outside the current scope");
+        }
+        while (size > mark) {
+            size--;
+            innermost[symbolIds[size]] = shadowed[size];
+        }
+    }
+
+    // ==================== Bindings ====================
+
+    /**
+     * Declare a symbol in the current scope, hiding any binding of the same
+     * name; returns the new binding's ID
+     * Use lookupInCurrentScope first to detect a redeclaration.
+     */
+    public int declare(int symbolId, SymbolKind kind, ValueType type, int declaration) {
+        if (symbolId < 0) {
+            throw new IllegalArgumentException("Invalid symbol ID " + symbolId);
+        }
+        if (symbolId >= innermost.length) {
+            int capacity = Math.max(innermost.length * 2, symbolId + 1);
+            int oldLength = innermost.length;
+            innermost = Arrays.copyOf(innermost, capacity);
+            Arrays.fill(innermost, oldLength, capacity, NONE);
+        }
+        if (size == symbolIds.length) {
+            grow();
+        }
+        int binding = size++;
+        symbolIds[binding] = symbolId;
+        kinds[binding] = (byte) kind.ordinal();
+        types[binding] = (byte) type.ordinal();
+        declarations[binding] = declaration;
+        depths[binding] = depth;
+        shadowed[binding] = innermost[symbolId];
+        innermost[symbolId] = binding;
+        return binding;
+    }
+
+    private void grow() {
+        int capacity = symbolIds.length * 2;
+        symbolIds = Arrays.copyOf(symbolIds, capacity);
+        kinds = Arrays.copyOf(kinds, capacity);
+        types = Arrays.copyOf(types, capacity);
+        declarations = Arrays.copyOf(declarations, capacity);
+        depths = Arrays.copyOf(depths, capacity);
+        shadowed = Arrays.copyOf(shadowed, capacity);
+    }
+
+    /**
+     * Binding the symbol refers to here, NONE if it is not declared
+     */
+    public int lookup(int symbolId) {
+        return symbolId >= 0 && symbolId < innermost.length ? innermost[symbolId] : NONE;
+    }
+
+    /**
+     * Binding of the symbol made in the current scope, NONE if there is none
+     */
+    public int lookupInCurrentScope(int symbolId) {
+        int binding = lookup(symbolId);
+        return binding != NONE && depths[binding] == depth ? binding : NONE;
+    }
+
+    // Accessors by binding ID
+    public int getSymbolId(int binding) {
+        return symbolIds[checkBinding(binding)];
+    }
+
+    public String getName(int binding) {
+        return symbols.getName(getSymbolId(binding));
+    }
+
+    public SymbolKind getKind(int binding) {
+        return KINDS[kinds[checkBinding(binding)]];
+    }
+
+    public ValueType getType(int binding) {
+        return TYPES[types[checkBinding(binding)]];
+    }
+
+    public void setType(int binding, ValueType type) {
+        types[checkBinding(binding)] = (byte) type.ordinal();
+    }
+
+    /**
+     * Node that declared the binding, NONE if none
+     */
+    public int getDeclaration(int binding) {
+        return declarations[checkBinding(binding)];
+    }
+
+    /**
+     * Depth of the scope the binding was declared in, 0 for global
+     */
+    public int getScopeDepth(int binding) {
+        return depths[checkBinding(binding)];
+    }
+
+    /**
+     * Binding of the same name this one hides, NONE if none
+     */
+    public int getShadowed(int binding) {
+        return shadowed[checkBinding(binding)];
+    }
+
+    /**
+     * Number of bindings visible or hidden in the open scopes
+     */
+    public int size() {
+        return size;
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
+
+    private int checkBinding(int binding) {
+        if (binding < 0 || binding >= size) {
+            throw new IndexOutOfBoundsException("Binding " + binding + ", size " + size);
+        }
+        return binding;
+    }
+}
@@ -0,0 +1,665 @@
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * SemanticAnalyzer.java
+ * Checks the scope, type and control-flow rules of docs/LanguageGrammar.txt
+ * section 3 on a parsed program
+ *
+ * All checks happen in one walk over the syntax tree. Names are resolved
+ * through a ScopedSymbolTable as the walk enters and leaves blocks, and
+ * the type of every expression node is computed once, from the types of
+ * its children, and kept in a side array indexed by node ID (getType).
+ * Expressions are walked with an explicit stack, since a long chain of
+ * left-associative operators makes a tree as deep as the chain is long.
+ *
+ * Declarations carry no type, so a variable or array takes the type of
+ * the first value it is given; ints widen to floats, so a numeric
+ * variable that is later given a float becomes a float. Parameter types
+ * are not known inside a function and accept any value. A function's
+ * return type is that of its return values (a function without any is a
+ * procedure), and functions may be called before they are declared.
+ *
+ * Errors are reported to the analyzer's ErrorHandler, and the resolved
+ * type of each declared name is written to the SymbolTable.
+ */
+public class SemanticAnalyzer {
+
+    private static final ValueType[] TYPES = ValueType.values();
+
+    private final SyntaxTree tree;
+    private final TokenBuffer tokens;
+    private final SymbolTable symbols;
+    private final ScopedSymbolTable scopes;
+    private final ErrorHandler errorHandler = new ErrorHandler();
+
+    // Resolved type of each node (ValueType ordinal), UNKNOWN for statements
+    private final byte[] nodeTypes;
+
+    // Declaration whose type a symbol shows in the SymbolTable, NONE if none yet
+    private int[] typedBy;
+
+    // Explicit stack for expressions: node IDs, ~node once its children are done
+    private int[] stack = new int[64];
+
+    private boolean inFunction;
+    private int function = ScopedSymbolTable.NONE;  // its binding, NONE if it was redeclared
+    private boolean returnsValue;                   // some return in it has a value
+
+    // Its returns without a value that came before the first with one
+    private int[] bareReturns = new int[8];
+    private int bareReturnCount;
+
+    private int loopDepth;
+
+    public SemanticAnalyzer(SyntaxTree tree, SymbolTable symbols) {
+        this.tree = tree;
+        this.tokens = tree.getTokens();
+        this.symbols = symbols;
+        this.scopes = new ScopedSymbolTable(symbols);
+        this.nodeTypes = new byte[tree.size()];
+        Arrays.fill(nodeTypes, (byte) ValueType.UNKNOWN.ordinal());
+        this.typedBy = new int[symbols.getSize()];
+        Arrays.fill(typedBy, SyntaxTree.NONE);
+        errorHandler.setPhase("semantic");
+    }
+
+    /**
+     * Check the whole program; returns the error handler
+     * Program ::= FunctionDeclaration* MainBlock
+     */
+    public ErrorHandler analyze() {
+        int program = tree.getRoot();
+        if (program == SyntaxTree.NONE) {
+            return errorHandler;
+        }
+
+        // Declare every function first, so calls may come before declarations
+        int[] functions = new int[tree.getChildCount(program)];
+        int index = 0;
+        for (int unit = tree.getFirstChild(program); unit != SyntaxTree.NONE;
+             unit = tree.getNextSibling(unit)) {
+            functions[index++] = tree.getKind(unit) == NodeKind.FUNCTION
+                                 ? declare(unit, SymbolKind.FUNCTION, ValueType.UNKNOWN)
+                                 : ScopedSymbolTable.NONE;
+        }
+
+        index = 0;
+        for (int unit = tree.getFirstChild(program); unit != SyntaxTree.NONE;
+             unit = tree.getNextSibling(unit)) {
+            int binding = functions[index++];
+            if (tree.getKind(unit) == NodeKind.FUNCTION) {
+                function(unit, binding);
+            } else if (tree.getKind(unit) == NodeKind.MAIN) {
+                block(tree.getFirstChild(unit));
+            }
+        }
+        return errorHandler;
+    }
+
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+
+    /**
+     * Type of an expression node found by analyze(); UNKNOWN for
+     * statements and for expressions whose type could not be found
+     */
+    public ValueType getType(int node) {
+        return TYPES[nodeTypes[node]];
+    }
+
+    public SyntaxTree getTree() {
+        return tree;
+    }
+
+    // ==================== Declarations and Statements ====================
+
+    /**
+     * FUNCTION: parameters and body share one scope
+     */
+    private void function(int node, int binding) {
+        inFunction = true;
+        function = binding;
+        returnsValue = false;
+        bareReturnCount = 0;
+        scopes.enterScope();
+        int parameters = tree.getFirstChild(node);
+        for (int parameter = tree.getFirstChild(parameters); parameter != SyntaxTree.NONE;
+             parameter = tree.getNextSibling(parameter)) {
+            declare(parameter, SymbolKind.PARAMETER, ValueType.UNKNOWN);
+        }
+        statements(tree.getNextSibling(parameters));
+        if (returnsValue) {
+            for (int i = 0; i < bareReturnCount; i++) {
+                error(ErrorCode.MISSING_RETURN_VALUE, bareReturns[i]);
+            }
+        }
+        scopes.exitScope();
+        inFunction = false;
+        function = ScopedSymbolTable.NONE;
+    }
+
+    /**
+     * A BLOCK in a scope of its own
+     */
+    private void block(int node) {
+        scopes.enterScope();
+        statements(node);
+        scopes.exitScope();
+    }
+
+    private void statements(int block) {
+        for (int statement = tree.getFirstChild(block); statement != SyntaxTree.NONE;
+             statement = tree.getNextSibling(statement)) {
+            statement(statement);
+        }
+    }
+
+    private void statement(int node) {
+        int first = tree.getFirstChild(node);
+        switch (tree.getKind(node)) {
+            case DECLARATION:
+                declare(node, SymbolKind.VARIABLE,
+                        first == SyntaxTree.NONE ? ValueType.UNKNOWN : expression(first));
+                break;
+            case ARRAY_DECLARATION: {
+                int initializer = tree.getNextSibling(first);
+                declare(node, SymbolKind.ARRAY,
+                        initializer == SyntaxTree.NONE ? ValueType.UNKNOWN : expression(initializer));
+                break;
+            }
+            case ASSIGNMENT:
+            case CALL:
+                expression(node);
+                break;
+            case INPUT:
+                if (first != SyntaxTree.NONE) {
+                    expression(first);
+                }
+                break;
+            case OUTPUT:
+                for (int value = first; value != SyntaxTree.NONE; value = tree.getNextSibling(value)) {
+                    expression(value);
+                }
+                break;
+            case CONDITIONAL: {
+                condition(first);
+                int then = tree.getNextSibling(first);
+                block(then);
+                int otherwise = tree.getNextSibling(then);
+                if (otherwise != SyntaxTree.NONE) {
+                    block(otherwise);
+                }
+                break;
+            }
+            case LOOP:
+                condition(first);
+                loopDepth++;
+                block(tree.getNextSibling(first));
+                loopDepth--;
+                break;
+            case RETURN:
+                returnStatement(node, first);
+                break;
+            case BREAK:
+                if (loopDepth == 0) {
+                    error(ErrorCode.BREAK_OUTSIDE_LOOP, node);
+                }
+                break;
+            case CONTINUE:
+                if (loopDepth == 0) {
+                    error(ErrorCode.CONTINUE_OUTSIDE_LOOP, node);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void condition(int node) {
+        ValueType type = expression(node);
+        if (type != ValueType.BOOLEAN && type != ValueType.UNKNOWN) {
+            error(ErrorCode.CONDITION_NOT_BOOLEAN, node);
+        }
+    }
+
+    /**
+     * RETURN: only in functions; the function's return type is that of its
+     * return values. A function with no return values is a procedure, but
+     * once one return has a value, all must have one.
+     */
+    private void returnStatement(int node, int value) {
+        ValueType type = value == SyntaxTree.NONE ? ValueType.UNKNOWN : expression(value);
+        if (!inFunction) {
+            error(ErrorCode.RETURN_OUTSIDE_FUNCTION, node);
+            return;
+        }
+        if (value == SyntaxTree.NONE) {
+            if (returnsValue) {
+                error(ErrorCode.MISSING_RETURN_VALUE, node);
+                return;
+            }
+            // Reported at the end of the function if a later return has a value
+            if (bareReturnCount == bareReturns.length) {
+                bareReturns = Arrays.copyOf(bareReturns, bareReturnCount * 2);
+            }
+            bareReturns[bareReturnCount++] = node;
+            return;
+        }
+        returnsValue = true;
+        if (function == ScopedSymbolTable.NONE) {
+            return;
+        }
+        ValueType returned = scopes.getType(function);
+        if (returned == ValueType.UNKNOWN || (returned == ValueType.INT && type == ValueType.FLOAT)) {
+            setType(function, type);
+        } else if (!assignable(returned, type)) {
+            error(ErrorCode.RETURN_TYPE_MISMATCH, value);
+        }
+    }
+
+    /**
+     * Declare the name of node in the current scope; returns its binding,
+     * or NONE if it has no name or is already declared in this scope
+     */
+    private int declare(int node, SymbolKind kind, ValueType type) {
+        int symbol = symbolOf(node);
+        if (symbol == SymbolTable.NO_SYMBOL) {
+            return ScopedSymbolTable.NONE;
+        }
+        if (scopes.lookupInCurrentScope(symbol) != ScopedSymbolTable.NONE) {
+            error(ErrorCode.REDECLARED, node);
+            return ScopedSymbolTable.NONE;
+        }
+        int binding = scopes.declare(symbol, kind, type, node);
+        showType(binding);
+        return binding;
+    }
+
+    // ==================== Expressions ====================
+
+    /**
+     * Check an expression and every expression in it; returns its type
+     * Nodes are typed in postorder, so each node finds the types of its
+     * children in nodeTypes.
+     */
+    private ValueType expression(int root) {
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int entry = stack[--top];
+            if (entry < 0) {
+                int node = ~entry;
+                nodeTypes[node] = (byte) typeOf(node).ordinal();
+                continue;
+            }
+
+            // Revisit after the children, which are pushed last to first
+            int children = tree.getChildCount(entry);
+            if (top + children + 1 >= stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + children + 2));
+            }
+            stack[top++] = ~entry;
+            int slot = top + children - 1;
+            for (int child = tree.getFirstChild(entry); child != SyntaxTree.NONE;
+                 child = tree.getNextSibling(child)) {
+                stack[slot--] = child;
+            }
+            top += children;
+        }
+        return getType(root);
+    }
+
+    /**
+     * Type of one expression node, its children already typed
+     */
+    private ValueType typeOf(int node) {
+        switch (tree.getKind(node)) {
+            case LITERAL:
+                return literalType(node);
+            case NAME:
+                return name(node);
+            case INDEX:
+                return index(node);
+            case CALL:
+                return call(node);
+            case UNARY:
+                return unary(node);
+            case BINARY:
+                return binary(node);
+            case ASSIGNMENT:
+                return assignment(node);
+            default:
+                return ValueType.UNKNOWN;
+        }
+    }
+
+    private ValueType literalType(int node) {
+        switch (tokens.getType(tree.getToken(node))) {
+            case INTEGER_LITERAL:
+                return ValueType.INT;
+            case FLOAT_LITERAL:
+                return ValueType.FLOAT;
+            case STRING_LITERAL:
+                return ValueType.STRING;
+            case CHAR_LITERAL:
+                return ValueType.CHAR;
+            case BOOLEAN_LITERAL:
+                return ValueType.BOOLEAN;
+            default:
+                return ValueType.UNKNOWN;
+        }
+    }
+
+    private ValueType name(int node) {
+        int binding = resolve(node);
+        if (binding == ScopedSymbolTable.NONE) {
+            return ValueType.UNKNOWN;
+        }
+        if (scopes.getKind(binding) == SymbolKind.FUNCTION) {
+            error(ErrorCode.NOT_A_VARIABLE, node);
+            return ValueType.UNKNOWN;
+        }
+        if (scopes.getKind(binding) == SymbolKind.ARRAY) {
+            error(ErrorCode.ARRAY_WITHOUT_INDEX, node);
+            return ValueType.UNKNOWN;
+        }
+        return scopes.getType(binding);
+    }
+
+    private ValueType index(int node) {
+        int position = tree.getFirstChild(node);
+        ValueType positionType = getType(position);
+        if (positionType != ValueType.INT && positionType != ValueType.UNKNOWN) {
+            error(ErrorCode.INDEX_NOT_INTEGER, position);
+        }
+        int binding = resolve(node);
+        if (binding == ScopedSymbolTable.NONE) {
+            return ValueType.UNKNOWN;
+        }
+        if (scopes.getKind(binding) != SymbolKind.ARRAY) {
+            error(ErrorCode.NOT_AN_ARRAY, node);
+            return ValueType.UNKNOWN;
+        }
+        return scopes.getType(binding);
+    }
+
+    private ValueType call(int node) {
+        int binding = scopes.lookup(symbolOf(node));
+        if (binding == ScopedSymbolTable.NONE) {
+            error(ErrorCode.UNDECLARED_FUNCTION, node);
+            return ValueType.UNKNOWN;
+        }
+        if (scopes.getKind(binding) != SymbolKind.FUNCTION) {
+            error(ErrorCode.NOT_A_FUNCTION, node);
+            return ValueType.UNKNOWN;
+        }
+        int parameters = tree.getFirstChild(scopes.getDeclaration(binding));
+        if (tree.getChildCount(node) != tree.getChildCount(parameters)) {
+            error(ErrorCode.ARGUMENT_COUNT, node);
+        }
+        return scopes.getType(binding);
+    }
+
+    /**
+     * "!" needs a boolean, unary "+" and "-" a number
+     */
+    private ValueType unary(int node) {
+        ValueType operand = getType(tree.getFirstChild(node));
+        if (tokens.getType(tree.getToken(node)) == TokenType.LOGICAL_OP) {
+            if (operand != ValueType.BOOLEAN && operand != ValueType.UNKNOWN) {
+                error(ErrorCode.OPERAND_NOT_BOOLEAN, node);
+            }
+            return ValueType.BOOLEAN;
+        }
+        if (!operand.isNumeric() && operand != ValueType.UNKNOWN) {
+            error(ErrorCode.OPERAND_NOT_NUMERIC, node);
+            return ValueType.UNKNOWN;
+        }
+        return operand;
+    }
+
+    private ValueType binary(int node) {
+        int leftNode = tree.getFirstChild(node);
+        ValueType left = getType(leftNode);
+        ValueType right = getType(tree.getNextSibling(leftNode));
+        switch (tokens.getType(tree.getToken(node))) {
+            case LOGICAL_OP:
+                if (!isBoolean(left) || !isBoolean(right)) {
+                    error(ErrorCode.OPERAND_NOT_BOOLEAN, node);
+                }
+                return ValueType.BOOLEAN;
+            case RELATIONAL_OP:
+                if (!(isNumeric(left) && isNumeric(right)) && !(isBoolean(left) && isBoolean(right))) {
+                    error(ErrorCode.OPERANDS_NOT_COMPARABLE, node);
+                }
+                return ValueType.BOOLEAN;
+            default:
+                return arithmetic(node, left, right);
+        }
+    }
+
+    /**
+     * Result of an arithmetic operator: float if either operand is a
+     * float, int if both are ints
+     */
+    private ValueType arithmetic(int node, ValueType left, ValueType right) {
+        if (!isNumeric(left) || !isNumeric(right)) {
+            error(ErrorCode.OPERAND_NOT_NUMERIC, node);
+            return ValueType.UNKNOWN;
+        }
+        if (left == ValueType.UNKNOWN || right == ValueType.UNKNOWN) {
+            return ValueType.UNKNOWN;
+        }
+        return left == ValueType.FLOAT || right == ValueType.FLOAT ? ValueType.FLOAT : ValueType.INT;
+    }
+
+    /**
+     * ASSIGNMENT: "=" gives an untyped variable its type; compound
+     * operators, "++" and "--" need numbers. The result is the target's
+     * type after the assignment.
+     */
+    private ValueType assignment(int node) {
+        int target = tree.getFirstChild(node);
+        int value = tree.getNextSibling(target);
+        ValueType targetType = getType(target);
+        int binding = storedBinding(target);
+
+        if (value == SyntaxTree.NONE) {
+            // "++" or "--"
+            if (!isNumeric(targetType)) {
+                error(ErrorCode.OPERAND_NOT_NUMERIC, node);
+            }
+            return targetType;
+        }
+        ValueType valueType = getType(value);
+        if (tokens.getLength(tree.getToken(node)) == 2
+                && (!isNumeric(targetType) || !isNumeric(valueType))) {
+            // Compound operator, e.g. "+="
+            error(ErrorCode.OPERAND_NOT_NUMERIC, node);
+            return targetType;
+        }
+
+        if (valueType == ValueType.UNKNOWN || binding == ScopedSymbolTable.NONE) {
+            return targetType;
+        }
+        if (targetType == ValueType.UNKNOWN) {
+            if (scopes.getKind(binding) != SymbolKind.PARAMETER) {
+                setType(binding, valueType);
+            }
+            return valueType;
+        }
+        if (!assignable(targetType, valueType)) {
+            error(ErrorCode.TYPE_MISMATCH, node);
+            return targetType;
+        }
+        if (targetType == ValueType.INT && valueType == ValueType.FLOAT) {
+            setType(binding, ValueType.FLOAT);
+            return ValueType.FLOAT;
+        }
+        return targetType;
+    }
+
+    /**
+     * Binding an assignment to target stores into: a variable or parameter
+     * for a NAME, an array for an INDEX; NONE for any other target, whose
+     * error has already been reported
+     */
+    private int storedBinding(int target) {
+        NodeKind kind = tree.getKind(target);
+        if (kind != NodeKind.NAME && kind != NodeKind.INDEX) {
+            return ScopedSymbolTable.NONE;
+        }
+        int binding = scopes.lookup(symbolOf(target));
+        if (binding == ScopedSymbolTable.NONE) {
+            return ScopedSymbolTable.NONE;
+        }
+        SymbolKind symbolKind = scopes.getKind(binding);
+        boolean stored = kind == NodeKind.INDEX ? symbolKind == SymbolKind.ARRAY
+                         : symbolKind == SymbolKind.VARIABLE || symbolKind == SymbolKind.PARAMETER;
+        return stored ? binding : ScopedSymbolTable.NONE;
+    }
+
+    /**
+     * True if a value of type value can be stored where target is expected
+     */
+    private static boolean assignable(ValueType target, ValueType value) {
+        return target == value || value == ValueType.UNKNOWN || target == ValueType.UNKNOWN
+               || (target.isNumeric() && value.isNumeric());
+    }
+
+    private static boolean isNumeric(ValueType type) {
+        return type.isNumeric() || type == ValueType.UNKNOWN;
+    }
+
+    private static boolean isBoolean(ValueType type) {
+        return type == ValueType.BOOLEAN || type == ValueType.UNKNOWN;
+    }
+
+    // ==================== Names and Symbols ====================
+
+    /**
+     * Binding a NAME or INDEX refers to; reports undeclared names
+     */
+    private int resolve(int node) {
+        int binding = scopes.lookup(symbolOf(node));
+        if (binding == ScopedSymbolTable.NONE) {
+            error(ErrorCode.UNDECLARED_VARIABLE, node);
+        }
+        return binding;
+    }
+
+    /**
+     * SymbolTable ID of the node's name, NO_SYMBOL if it has none
+     * Tokens from the scanners carry their ID; others are looked up.
+     */
+    private int symbolOf(int node) {
+        int token = tree.getToken(node);
+        if (token == SyntaxTree.NONE || tokens.getType(token) != TokenType.IDENTIFIER) {
+            return SymbolTable.NO_SYMBOL;
+        }
+        int symbol = tokens.getSymbolId(token);
+        if (symbol == SymbolTable.NO_SYMBOL) {
+            String name = tokens.getLexeme(token);
+            symbol = symbols.lookup(name);
+            if (symbol == SymbolTable.NO_SYMBOL) {
+                symbol = symbols.addIdentifier(name, tokens.getLineNumber(token),
+                                               tokens.getColumnNumber(token));
+            }
+            tokens.setSymbolId(token, symbol);
+        }
+        return symbol;
+    }
+
+    private void setType(int binding, ValueType type) {
+        scopes.setType(binding, type);
+        showType(binding);
+    }
+
+    /**
+     * Show the binding's type in the SymbolTable, unless an earlier
+     * declaration of the same name is already shown there
+     */
+    private void showType(int binding) {
+        int symbol = scopes.getSymbolId(binding);
+        if (symbol >= typedBy.length) {
+            int oldLength = typedBy.length;
+            typedBy = Arrays.copyOf(typedBy, Math.max(oldLength * 2, symbol + 1));
+            Arrays.fill(typedBy, oldLength, typedBy.length, SyntaxTree.NONE);
+        }
+        int declaration = scopes.getDeclaration(binding);
+        if (typedBy[symbol] != SyntaxTree.NONE && typedBy[symbol] != declaration) {
+            return;
+        }
+        typedBy[symbol] = declaration;
+        String type = scopes.getType(binding).toString();
+        switch (scopes.getKind(binding)) {
+            case ARRAY:
+                type += "[]";
+                break;
+            case FUNCTION:
+                type = "function " + type;
+                break;
+            default:
+                break;
+        }
+        symbols.setType(symbol, type);
+    }
+
+    private void error(ErrorCode code, int node) {
+        int token = tree.getToken(node);
+        if (token != SyntaxTree.NONE) {
+            errorHandler.report(code, tokens.getOffset(token), tokens.getLineNumber(token),
+                                tokens.getColumnNumber(token), tokens.getText(token));
+        }
+    }
+
+    // ==================== Main Method ====================
+
+    /**
+     * Scan, parse and check a file, reporting the errors of each phase;
+     * -s also prints the symbol table with the resolved types
+     */
+    public static void main(String[] args) {
+        boolean showSymbols = args.length == 2 && args[0].equals("-s");
+        if (args.length != 1 && !showSymbols) {
+            System.out.println("Usage: java SemanticAnalyzer [-s] <source-file>");
+            System.out.println("Example: java SemanticAnalyzer -s test1.lang");
+            return;
+        }
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), 64 * 1024), false, System.out.charset());
+        String filename = args[args.length - 1];
+        try (Reader reader = new MappedFileReader(filename)) {
+            out.println("Analyzing file: " + filename);
+            long start = System.nanoTime();
+            ManualScanner scanner = new ManualScanner(reader);
+            Parser parser = new Parser(scanner);
+            SyntaxTree tree = parser.parse();
+            long parsed = System.nanoTime();
+
+            scanner.getErrorHandler().displayErrors(out);
+            parser.getErrorHandler().displayErrors(out);
+            if (parser.getErrorHandler().hasErrors()) {
+                out.println("Semantic analysis skipped: the program has syntax errors");
+                return;
+            }
+            SemanticAnalyzer analyzer = new SemanticAnalyzer(tree, scanner.getSymbolTable());
+            analyzer.analyze();
+            long analyzed = System.nanoTime();
+
+            if (showSymbols) {
+                scanner.getSymbolTable().display(out);
+            }
+            analyzer.getErrorHandler().displayErrors(out);
+            out.printf("Parsed %d nodes in %.1f ms, analyzed in %.1f ms%n",
+                       tree.size(), (parsed - start) / 1e6, (analyzed - parsed) / 1e6);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+        } finally {
+            out.flush();
+        }
+    }
+}
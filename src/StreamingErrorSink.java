@@ -0,0 +1,33 @@
+import java.io.PrintStream;
+
+/**
+ * StreamingErrorSink.java
+ * Error sink that prints each error as soon as it is found
+ *
+ * Lines look like those of ErrorHandler.displayErrors(), numbered in the
+ * order the errors arrive. Nothing is kept, so memory use does not grow
+ * with the number of errors.
+ */
+public class StreamingErrorSink implements ErrorSink {
+
+    private final PrintStream out;
+    private int count;
+
+    public StreamingErrorSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void report(ErrorCode code, int offset, int line, int column,
+                       CharSequence lexeme, int length) {
+        count++;
+        out.println(count + ". " + code.format(line, column, lexeme, length));
+    }
+
+    /**
+     * Number of errors printed
+     */
+    public int getCount() {
+        return count;
+    }
+}
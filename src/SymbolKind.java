@@ -0,0 +1,10 @@
+/**
+ * SymbolKind.java
+ * What a name declared in a ScopedSymbolTable stands for
+ */
+public enum SymbolKind {
+    VARIABLE,
+    ARRAY,
+    PARAMETER,
+    FUNCTION
+}
@@ -1,114 +1,343 @@
+import java.io.PrintStream;
 import java.util.*;
 
 /**
  * SymbolTable.java
  * Maintains a table of all identifiers found during scanning
  * Tracks their type, first occurrence location, and frequency
+ *
+ * Every distinct identifier gets a dense int ID (0, 1, 2, ... in order of
+ * first occurrence), which tokens carry as their symbol ID. Names are
+ * looked up through an open-addressing hash table keyed directly on a
+ * char range of the source, so an identifier that is already known is
+ * found without creating a String. Per-symbol data lives in parallel
+ * arrays indexed by ID.
  */
 public class SymbolTable {
     
+    public static final int NO_SYMBOL = -1;
+    
+    private static final int DEFAULT_CAPACITY = 64;
+    
+    // Per-symbol data, indexed by ID
+    private String[] names;
+    private int[] hashes;
+    private String[] types;         // Will be determined in semantic analysis
+    private int[] firstLines;
+    private int[] firstColumns;
+    private int[] frequencies;
+    private int size;
+    
+    // Open addressing: slot holds ID + 1, 0 when empty
+    private int[] slots;
+    
+    public SymbolTable() {
+        names = new String[DEFAULT_CAPACITY];
+        hashes = new int[DEFAULT_CAPACITY];
+        types = new String[DEFAULT_CAPACITY];
+        firstLines = new int[DEFAULT_CAPACITY];
+        firstColumns = new int[DEFAULT_CAPACITY];
+        frequencies = new int[DEFAULT_CAPACITY];
+        slots = new int[DEFAULT_CAPACITY * 2];
+    }
+    
     /**
-     * Inner class to store information about each identifier
+     * Add the identifier chars[offset, offset + length) or increment its
+     * frequency; returns its symbol ID
+     * Only a new identifier allocates (its name String).
      */
-    private class SymbolInfo {
-        String name;
-        String type;              // Will be determined in semantic analysis
-        int firstLine;
-        int firstColumn;
-        int frequency;
-        
-        SymbolInfo(String name, int line, int column) {
-            this.name = name;
-            this.type = "undeclared";  // Type will be set later during semantic analysis
-            this.firstLine = line;
-            this.firstColumn = column;
-            this.frequency = 1;
+    public int addIdentifier(char[] chars, int offset, int length, int line, int column) {
+        return add(chars, offset, length, line, column, 1);
+    }
+    
+    /**
+     * Add an identifier to the symbol table or increment its frequency
+     */
+    public int addIdentifier(String name, int line, int column) {
+        return addIdentifier(name.toCharArray(), 0, name.length(), line, column);
+    }
+    
+    /**
+     * Add count occurrences of name at once, for tables merged from
+     * elsewhere; (line, column) is used only if name is new
+     */
+    public int addOccurrences(String name, int line, int column, int count) {
+        return add(name.toCharArray(), 0, name.length(), line, column, count);
+    }
+    
+    private int add(char[] chars, int offset, int length, int line, int column, int count) {
+        int hash = hash(chars, offset, length);
+        int slot = findSlot(chars, offset, length, hash);
+        if (slots[slot] != 0) {
+            // Identifier already exists, just increment frequency
+            int id = slots[slot] - 1;
+            frequencies[id] += count;
+            return id;
         }
-        
-        void incrementFrequency() {
-            frequency++;
+        // New identifier, add to table
+        return insert(slot, new String(chars, offset, length), hash, line, column, count);
+    }
+    
+    /**
+     * Symbol ID of chars[offset, offset + length), or NO_SYMBOL
+     */
+    public int lookup(char[] chars, int offset, int length) {
+        int slot = findSlot(chars, offset, length, hash(chars, offset, length));
+        return slots[slot] - 1;
+    }
+    
+    /**
+     * Symbol ID of name, or NO_SYMBOL
+     */
+    public int lookup(String name) {
+        return lookup(name.toCharArray(), 0, name.length());
+    }
+    
+    static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars[offset + i];
+        }
+        return h ^ (h >>> 16);
+    }
+    
+    /**
+     * Slot holding the name, or the empty slot where it would go
+     */
+    private int findSlot(char[] chars, int offset, int length, int hash) {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == hash && matches(names[id], chars, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private static boolean matches(String name, char[] chars, int offset, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private int insert(int slot, String name, int hash, int line, int column, int frequency) {
+        if (size == names.length) {
+            growEntries();
         }
+        int id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        types[id] = "undeclared";  // Type will be set later during semantic analysis
+        firstLines[id] = line;
+        firstColumns[id] = column;
+        frequencies[id] = frequency;
+        slots[slot] = id + 1;
         
-        @Override
-        public String toString() {
-            return String.format("%-20s | %-15s | Line: %-4d Col: %-4d | Frequency: %d",
-                               name, type, firstLine, firstColumn, frequency);
+        // Keep the hash table at most half full
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
         }
+        return id;
     }
     
-    // Use LinkedHashMap to maintain insertion order
-    private Map<String, SymbolInfo> table;
+    private void growEntries() {
+        int capacity = names.length * 2;
+        names = Arrays.copyOf(names, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        types = Arrays.copyOf(types, capacity);
+        firstLines = Arrays.copyOf(firstLines, capacity);
+        firstColumns = Arrays.copyOf(firstColumns, capacity);
+        frequencies = Arrays.copyOf(frequencies, capacity);
+    }
     
-    public SymbolTable() {
-        table = new LinkedHashMap<>();
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
     }
     
     /**
-     * Add an identifier to the symbol table or increment its frequency
+     * Merge a table built from a later part of the same source
+     * Frequencies are summed; first occurrences already here are kept,
+     * and new identifiers are appended in the other table's order.
+     * Returns, for each ID of the other table, the matching ID here.
      */
-    public void addIdentifier(String name, int line, int column) {
-        if (table.containsKey(name)) {
-            // Identifier already exists, just increment frequency
-            table.get(name).incrementFrequency();
-        } else {
-            // New identifier, add to table
-            table.put(name, new SymbolInfo(name, line, column));
+    public int[] mergeFrom(SymbolTable other) {
+        int[] idMap = new int[other.size];
+        for (int i = 0; i < other.size; i++) {
+            char[] name = other.names[i].toCharArray();
+            int slot = findSlot(name, 0, name.length, other.hashes[i]);
+            if (slots[slot] != 0) {
+                idMap[i] = slots[slot] - 1;
+                frequencies[idMap[i]] += other.frequencies[i];
+            } else {
+                idMap[i] = insert(slot, other.names[i], other.hashes[i], other.firstLines[i],
+                                  other.firstColumns[i], other.frequencies[i]);
+                types[idMap[i]] = other.types[i];
+            }
+        }
+        return idMap;
+    }
+    
+    /**
+     * Merge per-thread or per-chunk tables into a new table
+     * Each table lists its identifiers in order of first occurrence, as a
+     * scan produces them, so the tables are merged in one linear pass
+     * ordered by (first line, first column) with nothing to sort. A name
+     * found in several tables keeps its earliest first occurrence and the
+     * sum of its frequencies. Ties go to the table listed first, so the
+     * result does not depend on which thread finished when.
+     */
+    public static SymbolTable merge(SymbolTable... tables) {
+        SymbolTable merged = new SymbolTable();
+        int[] next = new int[tables.length];        // cursor into each table
+        while (true) {
+            int best = -1;
+            for (int t = 0; t < tables.length; t++) {
+                if (next[t] < tables[t].size &&
+                    (best < 0 || comesBefore(tables[t], next[t], tables[best], next[best]))) {
+                    best = t;
+                }
+            }
+            if (best < 0) {
+                return merged;
+            }
+            SymbolTable table = tables[best];
+            int i = next[best]++;
+            int known = merged.size;
+            int id = merged.addOccurrences(table.names[i], table.firstLines[i],
+                                           table.firstColumns[i], table.frequencies[i]);
+            if (id >= known) {
+                merged.types[id] = table.types[i];   // type of the first occurrence
+            }
         }
     }
     
+    private static boolean comesBefore(SymbolTable a, int i, SymbolTable b, int j) {
+        if (a.firstLines[i] != b.firstLines[j]) {
+            return a.firstLines[i] < b.firstLines[j];
+        }
+        return a.firstColumns[i] < b.firstColumns[j];
+    }
+    
     /**
      * Check if an identifier exists in the symbol table
      */
     public boolean contains(String name) {
-        return table.containsKey(name);
+        return lookup(name) != NO_SYMBOL;
     }
     
     /**
      * Get the frequency of an identifier
      */
     public int getFrequency(String name) {
-        SymbolInfo info = table.get(name);
-        return (info != null) ? info.frequency : 0;
+        int id = lookup(name);
+        return (id != NO_SYMBOL) ? frequencies[id] : 0;
+    }
+    
+    // Accessors by symbol ID
+    public String getName(int id) {
+        return names[checkId(id)];
+    }
+    
+    public String getType(int id) {
+        return types[checkId(id)];
+    }
+    
+    public void setType(int id, String type) {
+        types[checkId(id)] = type;
+    }
+    
+    public int getFirstLine(int id) {
+        return firstLines[checkId(id)];
+    }
+    
+    public int getFirstColumn(int id) {
+        return firstColumns[checkId(id)];
+    }
+    
+    public int getFrequency(int id) {
+        return frequencies[checkId(id)];
+    }
+    
+    private int checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Symbol ID " + id + ", size " + size);
+        }
+        return id;
     }
     
     /**
      * Get total number of unique identifiers
      */
     public int getSize() {
-        return table.size();
+        return size;
     }
     
     /**
      * Print the symbol table in a formatted way
      */
     public void display() {
-        System.out.println("\n" + "=".repeat(85));
-        System.out.println("SYMBOL TABLE");
-        System.out.println("=".repeat(85));
+        display(System.out);
+    }
+    
+    /**
+     * Print the symbol table to the given stream
+     */
+    public void display(PrintStream out) {
+        out.println("\n" + "=".repeat(85));
+        out.println("SYMBOL TABLE");
+        out.println("=".repeat(85));
         
-        if (table.isEmpty()) {
-            System.out.println("No identifiers found.");
+        if (size == 0) {
+            out.println("No identifiers found.");
         } else {
-            System.out.println(String.format("%-20s | %-15s | %-15s | %s",
+            out.println(String.format("%-20s | %-15s | %-15s | %s",
                              "Identifier", "Type", "First Occurrence", "Frequency"));
-            System.out.println("-".repeat(85));
+            out.println("-".repeat(85));
             
-            for (SymbolInfo info : table.values()) {
-                System.out.println(info);
+            // IDs follow insertion order
+            for (int id = 0; id < size; id++) {
+                out.println(String.format("%-20s | %-15s | Line: %-4d Col: %-4d | Frequency: %d",
+                                          names[id], types[id], firstLines[id],
+                                          firstColumns[id], frequencies[id]));
             }
             
-            System.out.println("-".repeat(85));
-            System.out.println("Total unique identifiers: " + table.size());
+            out.println("-".repeat(85));
+            out.println("Total unique identifiers: " + size);
         }
-        System.out.println("=".repeat(85) + "\n");
+        out.println("=".repeat(85) + "\n");
     }
     
     /**
-     * Get all identifiers sorted by frequency (for statistics)
+     * Get all symbol IDs sorted by frequency, most frequent first (for statistics)
      */
-    public List<Map.Entry<String, SymbolInfo>> getIdentifiersByFrequency() {
-        List<Map.Entry<String, SymbolInfo>> entries = new ArrayList<>(table.entrySet());
-        entries.sort((a, b) -> Integer.compare(b.getValue().frequency, a.getValue().frequency));
-        return entries;
+    public int[] getIdentifiersByFrequency() {
+        Integer[] ids = new Integer[size];
+        for (int id = 0; id < size; id++) {
+            ids[id] = id;
+        }
+        Arrays.sort(ids, (a, b) -> Integer.compare(frequencies[b], frequencies[a]));
+        
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = ids[i];
+        }
+        return result;
     }
 }
@@ -0,0 +1,245 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * SyntaxTree.java
+ * Arena-allocated syntax tree built by the Parser
+ *
+ * Nodes are int IDs (0, 1, 2, ... in creation order) into parallel arrays
+ * instead of objects: kind, token, first child, next sibling and last
+ * child (so children are appended in O(1)). A node's token is an index
+ * into the tree's TokenBuffer, which holds every token the parser read,
+ * so names, literal text and source positions come from there. A tree
+ * of n nodes takes about 17n bytes plus its tokens.
+ */
+public class SyntaxTree {
+
+    public static final int NONE = -1;
+
+    private static final NodeKind[] KINDS = NodeKind.values();
+    private static final int DEFAULT_CAPACITY = 256;
+
+    // One slot per node
+    private byte[] kinds;
+    private int[] tokenIndexes;     // index into tokens, NONE if none
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] lastChildren;
+    private int size;
+    private int root = NONE;
+
+    private final TokenBuffer tokens;
+
+    public SyntaxTree(TokenBuffer tokens) {
+        this.tokens = tokens;
+        kinds = new byte[DEFAULT_CAPACITY];
+        tokenIndexes = new int[DEFAULT_CAPACITY];
+        firstChildren = new int[DEFAULT_CAPACITY];
+        nextSiblings = new int[DEFAULT_CAPACITY];
+        lastChildren = new int[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Create a node with no children; returns its ID
+     */
+    public int add(NodeKind kind, int token) {
+        if (size == kinds.length) {
+            grow();
+        }
+        kinds[size] = (byte) kind.ordinal();
+        tokenIndexes[size] = token;
+        firstChildren[size] = NONE;
+        nextSiblings[size] = NONE;
+        lastChildren[size] = NONE;
+        return size++;
+    }
+
+    /**
+     * Append child as the last child of parent
+     */
+    public void addChild(int parent, int child) {
+        checkNode(parent);
+        checkNode(child);
+        if (firstChildren[parent] == NONE) {
+            firstChildren[parent] = child;
+        } else {
+            nextSiblings[lastChildren[parent]] = child;
+        }
+        lastChildren[parent] = child;
+    }
+
+    /**
+     * Create a node with the given children, in order
+     */
+    public int add(NodeKind kind, int token, int firstChild, int secondChild) {
+        int node = add(kind, token);
+        addChild(node, firstChild);
+        addChild(node, secondChild);
+        return node;
+    }
+
+    /**
+     * Copy the nodes [fromNode, other.size()) of another tree to the end of
+     * this one, adding tokenShift to their token indexes (e.g. a subtree
+     * parsed separately, whose tokens were appended to this tree's tokens)
+     * Links to nodes below fromNode are not allowed. Returns the amount
+     * added to the copied node IDs.
+     */
+    public int append(SyntaxTree other, int fromNode, int tokenShift) {
+        int count = other.size - fromNode;
+        int nodeShift = size - fromNode;
+        while (size + count > kinds.length) {
+            grow();
+        }
+        System.arraycopy(other.kinds, fromNode, kinds, size, count);
+        for (int i = 0; i < count; i++) {
+            int from = fromNode + i;
+            int to = size + i;
+            tokenIndexes[to] = shift(other.tokenIndexes[from], tokenShift);
+            firstChildren[to] = shift(other.firstChildren[from], nodeShift);
+            nextSiblings[to] = shift(other.nextSiblings[from], nodeShift);
+            lastChildren[to] = shift(other.lastChildren[from], nodeShift);
+        }
+        size += count;
+        return nodeShift;
+    }
+
+    private static int shift(int index, int amount) {
+        return index == NONE ? NONE : index + amount;
+    }
+
+    private void grow() {
+        int capacity = kinds.length + (kinds.length >> 1) + 1;
+        kinds = Arrays.copyOf(kinds, capacity);
+        tokenIndexes = Arrays.copyOf(tokenIndexes, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        lastChildren = Arrays.copyOf(lastChildren, capacity);
+    }
+
+    void setRoot(int root) {
+        this.root = checkNode(root);
+    }
+
+    // Accessors by node ID
+    public int getRoot() {
+        return root;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    public NodeKind getKind(int node) {
+        return KINDS[kinds[checkNode(node)]];
+    }
+
+    /**
+     * Index of the node's token in getTokens(), NONE if it has none
+     */
+    public int getToken(int node) {
+        return tokenIndexes[checkNode(node)];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[checkNode(node)];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings[checkNode(node)];
+    }
+
+    public int getChildCount(int node) {
+        int count = 0;
+        for (int child = getFirstChild(node); child != NONE; child = nextSiblings[child]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * The index-th child of node, NONE if it has fewer children
+     */
+    public int getChild(int node, int index) {
+        int child = getFirstChild(node);
+        for (int i = 0; i < index && child != NONE; i++) {
+            child = nextSiblings[child];
+        }
+        return child;
+    }
+
+    /**
+     * Text of the node's token, e.g. a name, literal or operator
+     */
+    public CharSequence getText(int node) {
+        int token = getToken(node);
+        return token == NONE ? "" : tokens.getText(token);
+    }
+
+    public int getLineNumber(int node) {
+        int token = getToken(node);
+        return token == NONE ? 0 : tokens.getLineNumber(token);
+    }
+
+    public int getColumnNumber(int node) {
+        int token = getToken(node);
+        return token == NONE ? 0 : tokens.getColumnNumber(token);
+    }
+
+    private int checkNode(int node) {
+        if (node < 0 || node >= size) {
+            throw new IndexOutOfBoundsException("Node " + node + ", size " + size);
+        }
+        return node;
+    }
+
+    /**
+     * Print the tree, one node per line indented by depth
+     */
+    public void display(PrintStream out) {
+        out.println("\n" + "=".repeat(80));
+        out.println("SYNTAX TREE");
+        out.println("=".repeat(80));
+        if (root != NONE) {
+            StringBuilder sb = new StringBuilder();
+            int[] stack = new int[64];
+            int[] depths = new int[64];
+            int top = 0;
+            stack[0] = root;
+            depths[0] = 0;
+
+            // Preorder without recursion; children are pushed last to first
+            while (top >= 0) {
+                int node = stack[top];
+                int depth = depths[top--];
+                sb.setLength(0);
+                sb.append("  ".repeat(depth)).append(getKind(node));
+                int token = tokenIndexes[node];
+                if (token != NONE) {
+                    sb.append(" \"").append(tokens.getText(token)).append("\" (Line: ")
+                      .append(tokens.getLineNumber(token)).append(", Col: ")
+                      .append(tokens.getColumnNumber(token)).append(')');
+                }
+                out.println(sb);
+
+                int children = getChildCount(node);
+                while (top + children + 1 >= stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                    depths = Arrays.copyOf(depths, depths.length * 2);
+                }
+                int slot = top + children;
+                for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                    stack[slot] = child;
+                    depths[slot--] = depth + 1;
+                }
+                top += children;
+            }
+        }
+        out.println("=".repeat(80));
+        out.println("Nodes: " + size + ", tokens: " + tokens.size() + "\n");
+    }
+}
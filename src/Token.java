@@ -1,13 +1,22 @@
+import java.nio.CharBuffer;
+
 /**
  * Token.java
  * Represents a single token identified by the lexical analyzer
  * Contains all necessary information about the token's type, value, and location
+ * 
+ * A token can reference its text as a range of the source instead of
+ * holding a copy; the lexeme String is then only created when asked for.
  */
 public class Token {
     private TokenType type;
-    private String lexeme;
+    private String lexeme;          // null until materialized from source
+    private char[] source;          // backing text when lexeme is lazy
+    private int offset;             // source offset, -1 if unknown
+    private int length;
     private int lineNumber;
     private int columnNumber;
+    private int symbolId = SymbolTable.NO_SYMBOL;   // identifiers only
     
     /**
      * Constructor to create a new token
@@ -17,8 +26,35 @@ public class Token {
      * @param columnNumber Column where token starts (1-indexed)
      */
     public Token(TokenType type, String lexeme, int lineNumber, int columnNumber) {
+        this(type, lexeme, -1, lineNumber, columnNumber);
+    }
+    
+    /**
+     * Constructor for a token whose source offset is known
+     * @param offset Offset of the first character of the token in the source
+     */
+    public Token(TokenType type, String lexeme, int offset, int lineNumber, int columnNumber) {
         this.type = type;
         this.lexeme = lexeme;
+        this.offset = offset;
+        this.length = lexeme.length();
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+    }
+    
+    /**
+     * Constructor for a token that references its text in the source
+     * No characters are copied until getLexeme() is called
+     * @param source The source text
+     * @param offset Offset of the first character of the token
+     * @param length Number of characters in the token
+     */
+    public Token(TokenType type, char[] source, int offset, int length, 
+                 int lineNumber, int columnNumber) {
+        this.type = type;
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
         this.lineNumber = lineNumber;
         this.columnNumber = columnNumber;
     }
@@ -28,10 +64,35 @@ public class Token {
         return type;
     }
     
+    /**
+     * Returns the lexeme, creating the String on first use
+     */
     public String getLexeme() {
+        if (lexeme == null) {
+            lexeme = new String(source, offset, length);
+            source = null;
+        }
         return lexeme;
     }
     
+    /**
+     * Returns the lexeme as a CharSequence without copying the source
+     */
+    public CharSequence getText() {
+        if (lexeme != null) {
+            return lexeme;
+        }
+        return CharBuffer.wrap(source, offset, length);
+    }
+    
+    public int getOffset() {
+        return offset;
+    }
+    
+    public int getLength() {
+        return length;
+    }
+    
     public int getLineNumber() {
         return lineNumber;
     }
@@ -40,14 +101,38 @@ public class Token {
         return columnNumber;
     }
     
+    /**
+     * Symbol table ID of an identifier, SymbolTable.NO_SYMBOL otherwise
+     */
+    public int getSymbolId() {
+        return symbolId;
+    }
+    
+    void setSymbolId(int symbolId) {
+        this.symbolId = symbolId;
+    }
+    
     /**
      * Returns a formatted string representation of the token
      * Format: <TOKEN_TYPE, "lexeme", Line: X, Col: Y>
      */
     @Override
     public String toString() {
-        return String.format("<%s, \"%s\", Line: %d, Col: %d>", 
-                           type, lexeme, lineNumber, columnNumber);
+        return appendTo(new StringBuilder(length + 48)).toString();
+    }
+    
+    /**
+     * Append the toString() form to sb without building a String first
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        sb.append('<').append(type).append(", \"");
+        if (lexeme != null) {
+            sb.append(lexeme);
+        } else {
+            sb.append(source, offset, length);
+        }
+        return sb.append("\", Line: ").append(lineNumber)
+                 .append(", Col: ").append(columnNumber).append('>');
     }
     
     /**
@@ -55,6 +140,6 @@ public class Token {
      */
     public String toDetailedString() {
         return String.format("Token{type=%s, lexeme='%s', line=%d, col=%d}", 
-                           type, lexeme, lineNumber, columnNumber);
+                           type, getLexeme(), lineNumber, columnNumber);
     }
 }
@@ -0,0 +1,481 @@
+import java.nio.CharBuffer;
+import java.util.*;
+
+/**
+ * TokenBuffer.java
+ * Compact token store using a struct-of-arrays layout
+ *
+ * Instead of one Token object per token, each field lives in its own
+ * growable primitive array (type ordinal, source offset, lexeme length,
+ * line, column). Token objects are only created on demand as views.
+ *
+ * Identifier tokens also carry their SymbolTable ID.
+ *
+ * When the whole source is in memory the buffer shares the source array
+ * and lexemes are just (offset, length) ranges into it. Otherwise lexeme
+ * characters are copied back to back into a private text pool.
+ */
+public class TokenBuffer implements Iterable<Token> {
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int DEFAULT_CAPACITY = 256;
+
+    // One slot per token
+    private byte[] types;
+    private int[] offsets;          // source offset of the token
+    private int[] lengths;          // length of lexeme
+    private int[] lines;
+    private int[] columns;
+    private int[] symbols;          // symbol ID, SymbolTable.NO_SYMBOL if none
+    private int size;
+
+    // Lexeme text: the shared source, or a pool indexed by textStarts
+    private char[] source;
+    private char[] text;
+    private int[] textStarts;
+    private int textLength;
+
+    // Shared mode only: lexemes that are not a plain slice of the source
+    private Map<Integer, String> editedLexemes;
+
+    /**
+     * Create a buffer that copies lexemes into its own text pool
+     */
+    public TokenBuffer() {
+        this(null, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a buffer whose lexemes are ranges of the given source
+     */
+    public TokenBuffer(char[] source) {
+        this(source, DEFAULT_CAPACITY);
+    }
+
+    private TokenBuffer(char[] source, int capacity) {
+        this.source = source;
+        types = new byte[capacity];
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        columns = new int[capacity];
+        symbols = new int[capacity];
+        if (source == null) {
+            text = new char[capacity * 4];
+            textStarts = new int[capacity];
+        }
+    }
+
+    /**
+     * Append a token whose lexeme is source[offset, offset + length)
+     * Nothing is copied when the buffer shares the source.
+     */
+    public void add(TokenType type, char[] chars, int from, int length,
+                    int offset, int line, int column) {
+        int index = append(type, offset, length, line, column);
+        if (source == null) {
+            ensureText(length);
+            System.arraycopy(chars, from, text, textLength, length);
+            textStarts[index] = textLength;
+            textLength += length;
+        }
+    }
+
+    /**
+     * Append a token with an explicit lexeme
+     */
+    public void add(TokenType type, CharSequence lexeme, int offset, int line, int column) {
+        int index = append(type, offset, lexeme.length(), line, column);
+        setText(index, lexeme);
+    }
+
+    private void setText(int index, CharSequence lexeme) {
+        int length = lexeme.length();
+        if (source == null) {
+            ensureText(length);
+            for (int i = 0; i < length; i++) {
+                text[textLength + i] = lexeme.charAt(i);
+            }
+            textStarts[index] = textLength;
+            textLength += length;
+        } else if (!sliceMatches(offsets[index], lexeme)) {
+            if (editedLexemes == null) {
+                editedLexemes = new HashMap<>();
+            }
+            editedLexemes.put(index, lexeme.toString());
+        }
+    }
+
+    /**
+     * Append a copy of an existing token
+     */
+    public void add(Token token) {
+        add(token.getType(), token.getText(), token.getOffset(),
+            token.getLineNumber(), token.getColumnNumber());
+        symbols[size - 1] = token.getSymbolId();
+    }
+
+    /**
+     * Append every token of another buffer, in order
+     * Buffers sharing the same source are merged with bulk array copies.
+     */
+    public void addAll(TokenBuffer other) {
+        addAll(other, null);
+    }
+
+    /**
+     * Append every token of another buffer, translating symbol IDs through
+     * symbolMap (see SymbolTable.mergeFrom); null keeps them as they are
+     */
+    public void addAll(TokenBuffer other, int[] symbolMap) {
+        addRange(other, 0, other.size, symbolMap);
+    }
+
+    /**
+     * Append the tokens [from, to) of another buffer, in order
+     */
+    public void addAll(TokenBuffer other, int from, int to) {
+        if (from < 0 || to > other.size || from > to) {
+            throw new IndexOutOfBoundsException("Token range " + from + ".." + to + ", size " + other.size);
+        }
+        addRange(other, from, to, null);
+    }
+
+    /**
+     * Copy of the tokens [from, to) in a new buffer that shares this
+     * buffer's source, if it has one
+     */
+    public TokenBuffer copyRange(int from, int to) {
+        TokenBuffer copy = new TokenBuffer(source, Math.max(to - from, 1));
+        copy.addAll(this, from, to);
+        return copy;
+    }
+
+    private void addRange(TokenBuffer other, int from, int to, int[] symbolMap) {
+        int start = size;
+        int count = to - from;
+        if (source == null || other.source != source) {
+            for (int i = from; i < to; i++) {
+                add(other.getType(i), other.getText(i), other.offsets[i],
+                    other.lines[i], other.columns[i]);
+            }
+        } else {
+            while (size + count > types.length) {
+                grow();
+            }
+            System.arraycopy(other.types, from, types, size, count);
+            System.arraycopy(other.offsets, from, offsets, size, count);
+            System.arraycopy(other.lengths, from, lengths, size, count);
+            System.arraycopy(other.lines, from, lines, size, count);
+            System.arraycopy(other.columns, from, columns, size, count);
+            copyEditedLexemes(other, from, to);
+            size += count;
+        }
+
+        for (int i = 0; i < count; i++) {
+            int symbol = other.symbols[from + i];
+            symbols[start + i] = (symbolMap == null || symbol < 0) ? symbol : symbolMap[symbol];
+        }
+    }
+
+    private void copyEditedLexemes(TokenBuffer other, int from, int to) {
+        if (other.editedLexemes != null) {
+            for (Map.Entry<Integer, String> entry : other.editedLexemes.entrySet()) {
+                int index = entry.getKey();
+                if (index >= from && index < to) {
+                    if (editedLexemes == null) {
+                        editedLexemes = new HashMap<>();
+                    }
+                    editedLexemes.put(size + index - from, entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace the tokens [from, to) with all tokens of replacement
+     * The tokens after to are moved up or down to make room.
+     */
+    public void replace(int from, int to, TokenBuffer replacement) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Token range " + from + ".." + to + ", size " + size);
+        }
+        int inserted = replacement.size;
+        int shift = inserted - (to - from);
+        while (size + shift > types.length) {
+            grow();
+        }
+
+        // Move the tail, then renumber edited lexemes around the gap
+        if (shift != 0) {
+            int tail = size - to;
+            System.arraycopy(types, to, types, to + shift, tail);
+            System.arraycopy(offsets, to, offsets, to + shift, tail);
+            System.arraycopy(lengths, to, lengths, to + shift, tail);
+            System.arraycopy(lines, to, lines, to + shift, tail);
+            System.arraycopy(columns, to, columns, to + shift, tail);
+            System.arraycopy(symbols, to, symbols, to + shift, tail);
+            if (textStarts != null) {
+                System.arraycopy(textStarts, to, textStarts, to + shift, tail);
+            }
+        }
+        if (editedLexemes != null) {
+            Map<Integer, String> renumbered = new HashMap<>();
+            for (Map.Entry<Integer, String> entry : editedLexemes.entrySet()) {
+                int index = entry.getKey();
+                if (index < from) {
+                    renumbered.put(index, entry.getValue());
+                } else if (index >= to) {
+                    renumbered.put(index + shift, entry.getValue());
+                }
+            }
+            editedLexemes = renumbered;
+        }
+        size += shift;
+
+        for (int i = 0; i < inserted; i++) {
+            int index = from + i;
+            types[index] = replacement.types[i];
+            offsets[index] = replacement.offsets[i];
+            lengths[index] = replacement.lengths[i];
+            lines[index] = replacement.lines[i];
+            columns[index] = replacement.columns[i];
+            symbols[index] = replacement.symbols[i];
+            if (source == null || replacement.source != source || replacement.editedLexeme(i) != null) {
+                setText(index, replacement.getText(i));
+            }
+        }
+    }
+
+    /**
+     * Split the token at index after its first length chars: the first
+     * part becomes a token of firstType, the rest keeps the token's type
+     * (e.g. a signed literal "-5" used as "A -5" becomes "-" and "5")
+     */
+    public void split(int index, int length, TokenType firstType) {
+        String lexeme = getLexeme(index);
+        if (length <= 0 || length >= lexeme.length()) {
+            throw new IllegalArgumentException("Cannot split \"" + lexeme + "\" after " + length);
+        }
+        TokenBuffer parts = new TokenBuffer(source, 2);
+        parts.add(firstType, lexeme.substring(0, length), offsets[index],
+                  lines[index], columns[index]);
+        parts.add(getType(index), lexeme.substring(length), offsets[index] + length,
+                  lines[index], columns[index] + length);
+        replace(index, index + 1, parts);
+    }
+
+    /**
+     * Move the tokens [from, size) by offsetDelta chars and lineDelta lines
+     * Tokens still on the same line as the token at from also move by
+     * columnDelta columns.
+     */
+    public void shift(int from, int offsetDelta, int lineDelta, int columnDelta) {
+        if (from >= size) {
+            return;
+        }
+        int firstLine = lines[checkIndex(from)];
+        for (int i = from; i < size && lines[i] == firstLine; i++) {
+            columns[i] += columnDelta;
+        }
+        for (int i = from; i < size; i++) {
+            offsets[i] += offsetDelta;
+            lines[i] += lineDelta;
+        }
+    }
+
+    /**
+     * Point a shared-source buffer at a new array holding the source,
+     * for example after it was copied into a larger array
+     */
+    public void setSource(char[] source) {
+        if (this.source == null) {
+            throw new IllegalStateException("Token buffer does not share a source");
+        }
+        this.source = source;
+    }
+
+    private int append(TokenType type, int offset, int length, int line, int column) {
+        if (size == types.length) {
+            grow();
+        }
+        types[size] = (byte) type.ordinal();
+        offsets[size] = offset;
+        lengths[size] = length;
+        lines[size] = line;
+        columns[size] = column;
+        symbols[size] = SymbolTable.NO_SYMBOL;
+        return size++;
+    }
+
+    private boolean sliceMatches(int offset, CharSequence lexeme) {
+        if (offset < 0 || offset + lexeme.length() > source.length) {
+            return lexeme.length() == 0;
+        }
+        for (int i = 0; i < lexeme.length(); i++) {
+            if (source[offset + i] != lexeme.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureText(int extra) {
+        if (textLength + extra > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + extra));
+        }
+    }
+
+    private void grow() {
+        int capacity = types.length + (types.length >> 1) + 1;
+        types = Arrays.copyOf(types, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        columns = Arrays.copyOf(columns, capacity);
+        symbols = Arrays.copyOf(symbols, capacity);
+        if (textStarts != null) {
+            textStarts = Arrays.copyOf(textStarts, capacity);
+        }
+    }
+
+    // Accessors by index
+    public int size() {
+        return size;
+    }
+
+    public TokenType getType(int index) {
+        return TYPES[types[checkIndex(index)]];
+    }
+
+    public int getOffset(int index) {
+        return offsets[checkIndex(index)];
+    }
+
+    public int getLength(int index) {
+        return lengths[checkIndex(index)];
+    }
+
+    public int getLineNumber(int index) {
+        return lines[checkIndex(index)];
+    }
+
+    public int getColumnNumber(int index) {
+        return columns[checkIndex(index)];
+    }
+
+    public int getSymbolId(int index) {
+        return symbols[checkIndex(index)];
+    }
+
+    /**
+     * Set the symbol ID of the token at index
+     */
+    public void setSymbolId(int index, int symbolId) {
+        symbols[checkIndex(index)] = symbolId;
+    }
+
+    /**
+     * Returns the lexeme as a CharSequence view, without copying
+     */
+    public CharSequence getText(int index) {
+        checkIndex(index);
+        String edited = editedLexeme(index);
+        if (edited != null) {
+            return edited;
+        }
+        if (source != null) {
+            return CharBuffer.wrap(source, offsets[index], lengths[index]);
+        }
+        return CharBuffer.wrap(text, textStarts[index], lengths[index]);
+    }
+
+    public String getLexeme(int index) {
+        checkIndex(index);
+        String edited = editedLexeme(index);
+        if (edited != null) {
+            return edited;
+        }
+        if (source != null) {
+            return new String(source, offsets[index], lengths[index]);
+        }
+        return new String(text, textStarts[index], lengths[index]);
+    }
+
+    /**
+     * Append the token at index in Token.toString() form to sb,
+     * copying the lexeme straight from the source or text pool
+     */
+    public StringBuilder appendTo(int index, StringBuilder sb) {
+        sb.append('<').append(getType(index)).append(", \"");
+        String edited = editedLexeme(index);
+        if (edited != null) {
+            sb.append(edited);
+        } else if (source != null) {
+            sb.append(source, offsets[index], lengths[index]);
+        } else {
+            sb.append(text, textStarts[index], lengths[index]);
+        }
+        return sb.append("\", Line: ").append(lines[index])
+                 .append(", Col: ").append(columns[index]).append('>');
+    }
+
+    private String editedLexeme(int index) {
+        return editedLexemes == null ? null : editedLexemes.get(index);
+    }
+
+    /**
+     * Create a Token view of the entry at index
+     * With a shared source the view's lexeme stays lazy as well.
+     */
+    public Token get(int index) {
+        TokenType type = getType(index);
+        Token token;
+        if (source != null && editedLexeme(index) == null) {
+            token = new Token(type, source, offsets[index], lengths[index],
+                              lines[index], columns[index]);
+        } else {
+            token = new Token(type, getLexeme(index), offsets[index], lines[index], columns[index]);
+        }
+        token.setSymbolId(symbols[index]);
+        return token;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Token index " + index + ", size " + size);
+        }
+        return index;
+    }
+
+    /**
+     * Remove all tokens, keeping the allocated capacity
+     */
+    public void clear() {
+        size = 0;
+        textLength = 0;
+        editedLexemes = null;
+    }
+
+    /**
+     * Read-only List view; Token objects are created as elements are accessed
+     */
+    public List<Token> asList() {
+        return new AbstractList<Token>() {
+            @Override
+            public Token get(int index) {
+                return TokenBuffer.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Token> iterator() {
+        return asList().iterator();
+    }
+}
@@ -0,0 +1,346 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * TokenCache.java
+ * On-disk cache of scan results, keyed by file content
+ *
+ * An entry holds everything scanFile reports for a file: the tokens (in
+ * the TokenStreamWriter format), the symbol table, the errors and the line
+ * and comment counts. Its key is the SHA-256 of the scanner version, the
+ * error limit and the file's bytes, so an unchanged file is loaded instead
+ * of lexed, and any change to the file or to the scanner misses. The
+ * scanner version is itself a hash of the scanner's class files, so a
+ * rebuilt scanner never sees entries written by an older one.
+ *
+ * Entries are written to a temporary file and renamed into place, so
+ * concurrent readers, in this JVM or in parallel batch runs, see either
+ * a whole entry or none; an unreadable entry is treated as a miss. The
+ * cache is kept under a size bound by deleting the least recently used
+ * entries (a hit refreshes an entry's modification time).
+ */
+public class TokenCache {
+
+    public static final long DEFAULT_MAX_BYTES = 512L << 20;
+
+    /**
+     * Hash of the classes whose behaviour decides the cached results
+     */
+    public static final String SCANNER_VERSION = fingerprint(
+        ManualScanner.class, ScannerDfa.class, Keywords.class, MappedFileReader.class,
+        TokenType.class, Token.class, ErrorCode.class, ErrorHandler.class, SymbolTable.class,
+        TokenBuffer.class, TokenStreamWriter.class, TokenStreamReader.class, TokenCache.class);
+
+    private static final byte[] MAGIC = { 'S', 'L', 'T', 'C' };
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long STALE_TEMP_MILLIS = 60 * 60 * 1000;
+    private static final ErrorCode[] CODES = ErrorCode.values();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong size = new AtomicLong();    // bytes in entries, approximately
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public TokenCache(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Open (or create) a cache in directory holding at most maxBytes of entries
+     */
+    public TokenCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        size.set(evict(Long.MAX_VALUE));
+    }
+
+    /**
+     * Scan a file, or load its results from the cache when its content
+     * has been scanned before with the same error limit
+     */
+    public ManualScanner scan(Path file, int errorLimit) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        long length = Files.size(file);
+        String key = key(file, errorLimit);
+        Path entry = directory.resolve(key + ENTRY_SUFFIX);
+
+        ManualScanner cached = load(entry, errorLimit);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        ManualScanner scanner;
+        try (Reader reader = new MappedFileReader(file)) {
+            scanner = new ManualScanner(reader);
+            scanner.getErrorHandler().setErrorLimit(errorLimit);
+            scanner.setMetrics(new ScanMetrics(file.toString()));
+            scanner.scan();
+        }
+
+        // Only store results that match the bytes that were hashed
+        if (Files.getLastModifiedTime(file).equals(modified) && Files.size(file) == length) {
+            store(entry, key, scanner);
+        }
+        return scanner;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Delete every entry
+     */
+    public synchronized void clear() throws IOException {
+        size.set(evict(0));
+    }
+
+    // ==================== Keys ====================
+
+    private static String key(Path file, int errorLimit) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(SCANNER_VERSION.getBytes(StandardCharsets.US_ASCII));
+        digest.update(ByteBuffer.allocate(4).putInt(0, errorLimit));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String fingerprint(Class<?>... classes) {
+        MessageDigest digest = sha256();
+        for (Class<?> cls : classes) {
+            try (InputStream in = cls.getResourceAsStream(cls.getSimpleName() + ".class")) {
+                if (in == null) {
+                    digest.update(cls.getName().getBytes(StandardCharsets.US_ASCII));
+                } else {
+                    digest.update(in.readAllBytes());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 8);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // ==================== Entries ====================
+
+    /**
+     * Entry layout (DataOutput): magic, scanner version, line and comment
+     * counts, the symbol table (name, first line, first column, frequency
+     * in ID order), the stored and suppressed errors, then the tokens as a
+     * binary token stream
+     */
+    private void store(Path entry, String key, ManualScanner scanner) throws IOException {
+        Path temp = Files.createTempFile(directory, key, TEMP_SUFFIX);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temp), 64 * 1024))) {
+                out.write(MAGIC);
+                out.writeUTF(SCANNER_VERSION);
+                out.writeInt(scanner.getLineCount());
+                out.writeInt(scanner.getCommentCount());
+
+                SymbolTable symbols = scanner.getSymbolTable();
+                out.writeInt(symbols.getSize());
+                for (int id = 0; id < symbols.getSize(); id++) {
+                    writeString(out, symbols.getName(id));
+                    out.writeInt(symbols.getFirstLine(id));
+                    out.writeInt(symbols.getFirstColumn(id));
+                    out.writeInt(symbols.getFrequency(id));
+                }
+
+                ErrorHandler errors = scanner.getErrorHandler();
+                out.writeInt(errors.getErrorCount());
+                out.writeInt(errors.getSuppressedCount());
+                for (int i = 0; i < errors.getErrorCount(); i++) {
+                    out.writeByte(errors.getCode(i).ordinal());
+                    out.writeInt(errors.getOffset(i));
+                    out.writeInt(errors.getLineNumber(i));
+                    out.writeInt(errors.getColumnNumber(i));
+                    out.writeInt(errors.getLength(i));
+                    writeString(out, errors.getText(i));
+                }
+
+                TokenStreamWriter tokens = new TokenStreamWriter(out);
+                tokens.writeAll(scanner.getTokenBuffer());
+                tokens.close();
+            }
+            long entrySize = Files.size(temp);
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (size.addAndGet(entrySize) > maxBytes) {
+                shrink();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Results stored in entry, or null if there is no usable entry
+     */
+    private ManualScanner load(Path entry, int errorLimit) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(entry), 64 * 1024))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || !in.readUTF().equals(SCANNER_VERSION)) {
+                return null;
+            }
+            int lineCount = in.readInt();
+            int commentCount = in.readInt();
+
+            SymbolTable symbols = new SymbolTable();
+            int symbolCount = in.readInt();
+            for (int id = 0; id < symbolCount; id++) {
+                String name = readString(in);
+                int line = in.readInt();
+                int column = in.readInt();
+                symbols.addOccurrences(name, line, column, in.readInt());
+            }
+
+            ErrorHandler errors = new ErrorHandler(errorLimit);
+            int errorCount = in.readInt();
+            int suppressed = in.readInt();
+            for (int i = 0; i < errorCount; i++) {
+                ErrorCode code = CODES[in.readUnsignedByte()];
+                int offset = in.readInt();
+                int line = in.readInt();
+                int column = in.readInt();
+                int length = in.readInt();
+                errors.report(code, offset, line, column, readString(in), length);
+            }
+            errors.addSuppressed(suppressed);
+
+            TokenBuffer tokens = new TokenBuffer();
+            new TokenStreamReader(in).readAll(tokens);
+            for (int i = 0; i < tokens.size(); i++) {
+                if (tokens.getType(i) == TokenType.IDENTIFIER) {
+                    tokens.setSymbolId(i, symbols.lookup(tokens.getLexeme(i)));
+                }
+            }
+
+            touch(entry);
+            return ManualScanner.restore(tokens, symbols, errors, lineCount, commentCount);
+        } catch (IOException | RuntimeException e) {
+            // Missing, evicted meanwhile, or damaged: scan again
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, CharSequence text) throws IOException {
+        out.writeInt(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            out.writeChar(text.charAt(i));
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        char[] chars = new char[in.readInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Only affects the eviction order
+        }
+    }
+
+    // ==================== Eviction ====================
+
+    /**
+     * Bring the cache down to three quarters of its bound, so that not
+     * every store has to list the directory
+     */
+    private synchronized void shrink() throws IOException {
+        if (size.get() > maxBytes) {
+            size.set(evict(maxBytes - maxBytes / 4));
+        }
+    }
+
+    /**
+     * Delete the least recently used entries until at most target bytes
+     * remain, plus temporary files left behind by crashed runs; returns
+     * the bytes remaining
+     */
+    private long evict(long target) throws IOException {
+        record Entry(Path path, long bytes, long modified) { }
+        List<Entry> entries = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        long total = 0;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                try {
+                    long modified = Files.getLastModifiedTime(path).toMillis();
+                    if (name.endsWith(ENTRY_SUFFIX)) {
+                        Entry entry = new Entry(path, Files.size(path), modified);
+                        entries.add(entry);
+                        total += entry.bytes();
+                    } else if (name.endsWith(TEMP_SUFFIX) && now - modified > STALE_TEMP_MILLIS) {
+                        Files.deleteIfExists(path);
+                    }
+                } catch (IOException e) {
+                    // Deleted by another run meanwhile
+                }
+            }
+        }
+
+        entries.sort(Comparator.comparingLong(Entry::modified));
+        for (int i = 0; i < entries.size() && total > target; i++) {
+            Entry entry = entries.get(i);
+            try {
+                Files.deleteIfExists(entry.path());
+            } catch (IOException e) {
+                // Still open elsewhere on some platforms; retried next time
+                continue;
+            }
+            total -= entry.bytes();
+        }
+        return total;
+    }
+}
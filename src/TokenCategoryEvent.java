@@ -0,0 +1,32 @@
+import jdk.jfr.*;
+
+/**
+ * TokenCategoryEvent.java
+ * JDK Flight Recorder event with the time one scan spent on one token type
+ *
+ * Emitted by ScanMetrics after each scan for every token type that
+ * occurred; the times are estimated from sampled tokens.
+ */
+@Name("simplelang.TokenCategory")
+@Label("Token Category")
+@Category({ "SimpleLang", "Scanner" })
+@Description("Token count and estimated lexing time of one token type in a scan")
+@StackTrace(false)
+public class TokenCategoryEvent extends Event {
+
+    @Label("Source")
+    String source;
+
+    @Label("Token Type")
+    String tokenType;
+
+    @Label("Count")
+    long count;
+
+    @Label("Nanoseconds per Token")
+    double nanosPerToken;
+
+    @Label("Estimated Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long estimatedNanos;
+}
@@ -0,0 +1,241 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TokenStreamReader.java
+ * Reads the binary token stream format written by TokenStreamWriter
+ *
+ * Tokens can be pulled one at a time with next(), or read straight into
+ * a TokenBuffer with readAll(). Lexemes from the lexeme cache are shared
+ * String instances, so a repeated keyword or identifier costs one String
+ * however often it occurs.
+ */
+public class TokenStreamReader implements Closeable {
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    // Fields of the last record read
+    private TokenType type;
+    private String lexeme;
+    private int offset;
+    private int line;
+    private int column;
+
+    private final String[] cache = new String[TokenStreamWriter.CACHE_SLOTS];
+    private boolean ended;
+
+    /**
+     * Open a stream on in; the header is checked immediately
+     */
+    public TokenStreamReader(InputStream in) throws IOException {
+        this.in = in;
+        for (byte magic : TokenStreamWriter.MAGIC) {
+            if (readByte() != (magic & 0xFF)) {
+                throw new IOException("Not a token stream");
+            }
+        }
+        int version = readByte();
+        if (version != TokenStreamWriter.VERSION) {
+            throw new IOException("Unsupported token stream version " + version);
+        }
+    }
+
+    /**
+     * Read the next record; false at the end of the stream
+     */
+    public boolean advance() throws IOException {
+        if (ended) {
+            return false;
+        }
+        int head = readByte();
+        if (head == TokenStreamWriter.END) {
+            ended = true;
+            return false;
+        }
+        int code = head & TokenStreamWriter.TYPE_MASK;
+        if (code >= TYPES.length || head >= 0x80) {
+            throw new IOException("Corrupt token stream: record head " + head);
+        }
+        type = TYPES[code];
+        int offsetStep = unzigzag(readVarint());
+        offset += offsetStep;
+        if ((head & TokenStreamWriter.SAME_LINE) == 0) {
+            line += unzigzag(readVarint());
+            column = readVarint();
+        } else if ((head & TokenStreamWriter.SAME_STEP) != 0) {
+            column += offsetStep;
+        } else {
+            column += unzigzag(readVarint());
+        }
+        lexeme = readLexeme();
+        return true;
+    }
+
+    /**
+     * The next token, or null at the end of the stream
+     */
+    public Token next() throws IOException {
+        return advance() ? new Token(type, lexeme, offset, line, column) : null;
+    }
+
+    // Fields of the record read by the last advance()
+    public TokenType getType() {
+        return type;
+    }
+
+    public String getLexeme() {
+        return lexeme;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLineNumber() {
+        return line;
+    }
+
+    public int getColumnNumber() {
+        return column;
+    }
+
+    /**
+     * Append every remaining token to tokens
+     */
+    public void readAll(TokenBuffer tokens) throws IOException {
+        while (advance()) {
+            tokens.add(type, lexeme, offset, line, column);
+        }
+    }
+
+    /**
+     * Read a whole token file into a new buffer
+     */
+    public static TokenBuffer readAll(InputStream in) throws IOException {
+        TokenBuffer tokens = new TokenBuffer();
+        try (TokenStreamReader reader = new TokenStreamReader(in)) {
+            reader.readAll(tokens);
+        }
+        return tokens;
+    }
+
+    private String readLexeme() throws IOException {
+        int ref = readVarint();
+        if (ref == TokenStreamWriter.INLINE) {
+            return readString();
+        }
+        int slot = (ref - 1) >>> 1;
+        if (slot >= TokenStreamWriter.CACHE_SLOTS) {
+            throw new IOException("Corrupt token stream: lexeme slot " + slot);
+        }
+        if ((ref & 1) == 0) {
+            cache[slot] = readString();
+        } else if (cache[slot] == null) {
+            throw new IOException("Corrupt token stream: empty lexeme slot " + slot);
+        }
+        return cache[slot];
+    }
+
+    private String readString() throws IOException {
+        int length = readVarint();
+        if (length <= BUFFER_SIZE) {
+            if (limit - position < length) {
+                compact(length);
+            }
+            String s = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return s;
+        }
+        byte[] bytes = new byte[length];
+        int copied = limit - position;
+        System.arraycopy(buffer, position, bytes, 0, copied);
+        position = limit;
+        if (in.readNBytes(bytes, copied, length - copied) != length - copied) {
+            throw new EOFException("Truncated token stream");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Move the unread bytes to the front and refill until n are available
+     */
+    private void compact(int n) throws IOException {
+        int remaining = limit - position;
+        System.arraycopy(buffer, position, buffer, 0, remaining);
+        position = 0;
+        limit = remaining;
+        while (limit < n) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                throw new EOFException("Truncated token stream");
+            }
+            limit += read;
+        }
+    }
+
+    private int readByte() throws IOException {
+        if (position == limit) {
+            compact(1);
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt token stream: varint too long");
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Print the tokens of a token file in the scanner's text format
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("Usage: java TokenStreamReader <token-file>");
+            System.out.println("Example: java TokenStreamReader test1.tok");
+            return;
+        }
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), 64 * 1024), false, System.out.charset());
+        try (TokenStreamReader reader = new TokenStreamReader(new FileInputStream(args[0]))) {
+            StringBuilder chunk = new StringBuilder();
+            Token token;
+            while ((token = reader.next()) != null) {
+                if (token.getType() != TokenType.EOF) {
+                    token.appendTo(chunk).append(System.lineSeparator());
+                    if (chunk.length() >= 64 * 1024) {
+                        out.append(chunk);
+                        chunk.setLength(0);
+                    }
+                }
+            }
+            out.append(chunk);
+        } catch (IOException e) {
+            System.err.println("Error reading token file: " + e.getMessage());
+        } finally {
+            out.flush();
+        }
+    }
+}
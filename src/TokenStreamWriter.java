@@ -0,0 +1,249 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TokenStreamWriter.java
+ * Writes tokens in the compact binary token stream format
+ *
+ * Layout: the 4 magic bytes "SLTK" and a version byte, then one record
+ * per token, then an END byte.
+ *
+ * A record starts with a head byte: the token type ordinal in the low 5
+ * bits, SAME_LINE when the token is on the previous token's line, and
+ * SAME_STEP when, on top of that, its column moved exactly as far as its
+ * offset (no tabs in between). Then come varints: the offset as a zigzag
+ * delta from the previous token's offset; unless SAME_LINE, the line
+ * delta and the absolute column; with SAME_LINE only, the zigzag column
+ * delta. Last comes a lexeme reference:
+ *   0           the lexeme follows inline (UTF-8 byte count and bytes)
+ *   2 * s + 1   the lexeme in slot s of the lexeme cache
+ *   2 * s + 2   a new lexeme, which follows inline and replaces slot s
+ * The cache has CACHE_SLOTS slots and a lexeme's slot is its hash, so
+ * keywords, operators and the identifiers in use cost two bytes at most;
+ * the reader replays the replacements and never hashes anything.
+ */
+public class TokenStreamWriter implements Closeable, Flushable {
+
+    static final byte[] MAGIC = { 'S', 'L', 'T', 'K' };
+    static final int VERSION = 1;
+    static final int END = 0xFF;
+
+    // Head byte flags
+    static final int TYPE_MASK = 0x1F;
+    static final int SAME_LINE = 0x20;
+    static final int SAME_STEP = 0x40;
+
+    static final int INLINE = 0;
+    static final int CACHE_SLOTS = 1 << 12;
+    static final int MAX_CACHED_LEXEME = 64;    // longer lexemes always go inline
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+
+    // Previous token, for the deltas
+    private int prevOffset;
+    private int prevLine;
+    private int prevColumn;
+
+    // Lexeme cache, one lexeme per slot
+    private final String[] cache = new String[CACHE_SLOTS];
+
+    private long tokensWritten;
+    private boolean closed;
+
+    /**
+     * Start a stream on out; the header is written immediately
+     */
+    public TokenStreamWriter(OutputStream out) throws IOException {
+        this.out = out;
+        System.arraycopy(MAGIC, 0, buffer, 0, MAGIC.length);
+        buffer[MAGIC.length] = (byte) VERSION;
+        count = MAGIC.length + 1;
+    }
+
+    /**
+     * Write one token
+     */
+    public void write(TokenType type, CharSequence lexeme, int offset, int line, int column)
+            throws IOException {
+        int offsetStep = offset - prevOffset;
+        int head = type.ordinal();
+        if (line == prevLine) {
+            head |= column - prevColumn == offsetStep ? SAME_LINE | SAME_STEP : SAME_LINE;
+        }
+        ensure(1);
+        buffer[count++] = (byte) head;
+        writeVarint(zigzag(offsetStep));
+        if (line != prevLine) {
+            writeVarint(zigzag(line - prevLine));
+            writeVarint(column);
+        } else if ((head & SAME_STEP) == 0) {
+            writeVarint(zigzag(column - prevColumn));
+        }
+        prevOffset = offset;
+        prevLine = line;
+        prevColumn = column;
+        writeLexeme(lexeme);
+        tokensWritten++;
+    }
+
+    public void write(Token token) throws IOException {
+        write(token.getType(), token.getText(), token.getOffset(),
+              token.getLineNumber(), token.getColumnNumber());
+    }
+
+    /**
+     * Write every token of the buffer, in order
+     */
+    public void writeAll(TokenBuffer tokens) throws IOException {
+        for (int i = 0; i < tokens.size(); i++) {
+            write(tokens.getType(i), tokens.getText(i), tokens.getOffset(i),
+                  tokens.getLineNumber(i), tokens.getColumnNumber(i));
+        }
+    }
+
+    /**
+     * Number of tokens written so far
+     */
+    public long getTokenCount() {
+        return tokensWritten;
+    }
+
+    private void writeLexeme(CharSequence lexeme) throws IOException {
+        if (lexeme.length() > MAX_CACHED_LEXEME) {
+            writeVarint(INLINE);
+            writeString(lexeme);
+            return;
+        }
+        int slot = hash(lexeme) & (CACHE_SLOTS - 1);
+        String cached = cache[slot];
+        if (cached != null && contentEquals(cached, lexeme)) {
+            writeVarint(2 * slot + 1);
+        } else {
+            writeVarint(2 * slot + 2);
+            writeString(lexeme);
+            cache[slot] = lexeme.toString();
+        }
+    }
+
+    private static int hash(CharSequence chars) {
+        int h = 0;
+        for (int i = 0; i < chars.length(); i++) {
+            h = 31 * h + chars.charAt(i);
+        }
+        return h ^ (h >>> 12);
+    }
+
+    private static boolean contentEquals(String entry, CharSequence chars) {
+        if (entry.length() != chars.length()) {
+            return false;
+        }
+        for (int i = 0; i < entry.length(); i++) {
+            if (entry.charAt(i) != chars.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * UTF-8 byte count then bytes; ASCII (the common case) is encoded
+     * directly into the buffer
+     */
+    private void writeString(CharSequence chars) throws IOException {
+        int length = chars.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = chars.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            writeVarint(length);
+            for (int i = 0; i < length; i++) {
+                if (count == buffer.length) {
+                    drain();
+                }
+                buffer[count++] = (byte) chars.charAt(i);
+            }
+        } else {
+            byte[] bytes = chars.toString().getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            if (bytes.length > buffer.length) {
+                drain();
+                out.write(bytes);
+            } else {
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buffer, count, bytes.length);
+                count += bytes.length;
+            }
+        }
+    }
+
+    private void writeVarint(int value) throws IOException {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[count++] = (byte) value;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private void ensure(int n) throws IOException {
+        if (count + n > buffer.length) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Write the END marker, flush and close the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        ensure(1);
+        buffer[count++] = (byte) END;
+        flush();
+        out.close();
+    }
+
+    /**
+     * Scan a source file and write its tokens in binary form
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java TokenStreamWriter <source-file> <token-file>");
+            System.out.println("Example: java TokenStreamWriter test1.lang test1.tok");
+            return;
+        }
+
+        try (Reader reader = new MappedFileReader(args[0]);
+             TokenStreamWriter writer = new TokenStreamWriter(new FileOutputStream(args[1]))) {
+            ManualScanner scanner = new ManualScanner(reader);
+            scanner.scan();
+            writer.writeAll(scanner.getTokenBuffer());
+            System.out.println(writer.getTokenCount() + " tokens written to " + args[1]);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * ValueType.java
+ * Types of SimpleLang values, as found by semantic analysis
+ *
+ * Declarations carry no type, so a variable takes the type of the value
+ * it is first given. The name is what the symbol table shows.
+ */
+public enum ValueType {
+    INT("int"),
+    FLOAT("float"),
+    STRING("string"),
+    CHAR("char"),
+    BOOLEAN("boolean"),
+    UNKNOWN("unknown");     // not known yet, or the type of an erroneous expression
+
+    private final String name;
+
+    ValueType(String name) {
+        this.name = name;
+    }
+
+    public boolean isNumeric() {
+        return this == INT || this == FLOAT;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
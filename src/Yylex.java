@@ -2,11 +2,12 @@
 // Generated by JFlex 1.9.1 http://jflex.de/
 // source: src/Scanner.flex
 
-import java.util.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 
 @SuppressWarnings("fallthrough")
-public class Yylex {
+public class Yylex implements Lexer {
 
   /** This character denotes the end of file. */
   public static final int YYEOF = -1;
@@ -98,11 +99,11 @@ public class Yylex {
   private static final String ZZ_ACTION_PACKED_0 =
     "\1\0\1\1\1\2\1\3\2\1\1\4\2\1\1\5"+
     "\4\4\1\6\1\7\1\10\1\11\14\1\1\7\1\0"+
-    "\1\12\1\0\1\2\1\0\1\3\2\0\1\10\1\13"+
-    "\1\14\1\0\1\11\16\0\1\15\1\16\1\11\14\0"+
-    "\1\2\1\16\1\0\1\11\4\0\1\17\4\0\1\20"+
-    "\1\16\1\0\1\16\1\11\5\0\1\16\1\11\2\0"+
-    "\1\16\1\11\1\16\30\11";
+    "\1\12\1\0\1\13\1\0\1\3\2\0\1\10\1\14"+
+    "\1\15\1\0\1\11\16\0\1\16\1\17\1\11\14\0"+
+    "\1\13\1\17\1\0\1\11\4\0\1\20\4\0\1\21"+
+    "\1\17\1\0\1\17\1\11\5\0\1\17\1\11\2\0"+
+    "\1\17\1\11\1\17\30\11";
 
   private static int [] zzUnpackAction() {
     int [] result = new int[127];
@@ -338,7 +339,6 @@ public class Yylex {
   private int yycolumn;
 
   /** Number of characters up to the start of the matched text. */
-  @SuppressWarnings("unused")
   private long yychar;
 
   /** Whether the scanner is currently at the beginning of a line. */
@@ -349,6 +349,69 @@ public class Yylex {
   @SuppressWarnings("unused")
   private boolean zzEOFDone;
 
+  /* user code: */
+    private SymbolTable symbolTable = new SymbolTable();
+    private final ErrorHandler errorHandler = new ErrorHandler();
+    private int tokenCount;
+    private int commentCount;
+
+    /**
+     * Token for the text just matched; counts it and adds identifiers
+     * to the symbol table
+     */
+    private Token token(TokenType type) {
+        Token token = new Token(type, yytext(), (int) yychar, yyline + 1, yycolumn + 1);
+        if (type == TokenType.IDENTIFIER) {
+            token.setSymbolId(symbolTable.addIdentifier(zzBuffer, zzStartRead, yylength(),
+                                                        yyline + 1, yycolumn + 1));
+        }
+        tokenCount++;
+        return token;
+    }
+
+    /**
+     * Lexer pull API: like yylex(), but returns an EOF token at the end
+     */
+    @Override
+    public Token nextToken() {
+        try {
+            Token token = yylex();
+            if (token == null) {
+                token = new Token(TokenType.EOF, "", (int) yychar, yyline + 1, yycolumn + 1);
+            }
+            return token;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    @Override
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+
+    @Override
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Number of comments skipped so far
+     */
+    public int getCommentCount() {
+        return commentCount;
+    }
+
 
   /**
    * Creates a new scanner
@@ -637,6 +700,8 @@ public class Yylex {
     while (true) {
       zzMarkedPosL = zzMarkedPos;
 
+      yychar+= zzMarkedPosL-zzStartRead;
+
       boolean zzR = false;
       int zzCh;
       int zzCharCount;
@@ -761,87 +826,91 @@ public class Yylex {
       else {
         switch (zzAction < 0 ? zzAction : ZZ_ACTION[zzAction]) {
           case 1:
-            { System.out.println("Lexical Error at Line " + (yyline+1) +
-        " Column " + (yycolumn+1) +
-        " : Invalid character -> " + yytext());
+            { errorHandler.report(ErrorCode.INVALID_CHARACTER, (int) yychar, yyline + 1, yycolumn + 1,
+                        yytext());
             }
           // fall through
-          case 17: break;
+          case 18: break;
           case 2:
             { /* skip */
             }
           // fall through
-          case 18: break;
+          case 19: break;
           case 3:
-            { return new Token(TokenType.LOGICAL_OP, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.LOGICAL_OP);
             }
           // fall through
-          case 19: break;
+          case 20: break;
           case 4:
-            { return new Token(TokenType.ARITHMETIC_OP, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.ARITHMETIC_OP);
             }
           // fall through
-          case 20: break;
+          case 21: break;
           case 5:
-            { return new Token(TokenType.PUNCTUATOR, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.PUNCTUATOR);
             }
           // fall through
-          case 21: break;
+          case 22: break;
           case 6:
-            { return new Token(TokenType.INTEGER_LITERAL, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.INTEGER_LITERAL);
             }
           // fall through
-          case 22: break;
+          case 23: break;
           case 7:
-            { return new Token(TokenType.RELATIONAL_OP, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.RELATIONAL_OP);
             }
           // fall through
-          case 23: break;
+          case 24: break;
           case 8:
-            { return new Token(TokenType.ASSIGNMENT_OP, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.ASSIGNMENT_OP);
             }
           // fall through
-          case 24: break;
+          case 25: break;
           case 9:
-            { return new Token(TokenType.IDENTIFIER, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.IDENTIFIER);
             }
           // fall through
-          case 25: break;
+          case 26: break;
           case 10:
-            { return new Token(TokenType.STRING_LITERAL, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.STRING_LITERAL);
             }
           // fall through
-          case 26: break;
+          case 27: break;
           case 11:
-            { return new Token(TokenType.INCREMENT_OP, yytext(), yyline+1, yycolumn+1);
+            { commentCount++;
             }
           // fall through
-          case 27: break;
+          case 28: break;
           case 12:
-            { return new Token(TokenType.DECREMENT_OP, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.INCREMENT_OP);
             }
           // fall through
-          case 28: break;
+          case 29: break;
           case 13:
-            { return new Token(TokenType.CHAR_LITERAL, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.DECREMENT_OP);
             }
           // fall through
-          case 29: break;
+          case 30: break;
           case 14:
-            { return new Token(TokenType.FLOAT_LITERAL, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.CHAR_LITERAL);
             }
           // fall through
-          case 30: break;
+          case 31: break;
           case 15:
-            { return new Token(TokenType.KEYWORD, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.FLOAT_LITERAL);
             }
           // fall through
-          case 31: break;
+          case 32: break;
           case 16:
-            { return new Token(TokenType.BOOLEAN_LITERAL, yytext(), yyline+1, yycolumn+1);
+            { return token(TokenType.KEYWORD);
             }
           // fall through
-          case 32: break;
+          case 33: break;
+          case 17:
+            { return token(TokenType.BOOLEAN_LITERAL);
+            }
+          // fall through
+          case 34: break;
           default:
             zzScanError(ZZ_NO_MATCH);
         }